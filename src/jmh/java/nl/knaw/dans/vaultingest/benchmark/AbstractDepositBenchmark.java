@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base class for benchmarks that need a deposit on disk. A synthetic deposit is generated once per trial in a temporary directory, which is removed afterwards. The size of the deposit is
+ * controlled with the {@code fileCount} and {@code fileSize} parameters, which can be overridden on the JMH command line with {@code -p}.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractDepositBenchmark {
+    static final String NBN = "urn:nbn:nl:ui:13-bench-0001";
+
+    @Param({ "10", "1000" })
+    public int fileCount;
+
+    @Param({ "1024" })
+    public long fileSize;
+
+    protected Path workDir;
+    protected Path depositDir;
+
+    @Setup(Level.Trial)
+    public void generateDeposit() throws Exception {
+        workDir = Files.createTempDirectory("vault-ingest-benchmark");
+        depositDir = new SyntheticBagGenerator(fileCount, fileSize).generate(workDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDeposit() throws IOException {
+        FileUtils.deleteDirectory(workDir.toFile());
+    }
+
+    protected Deposit loadDeposit() {
+        var deposit = new DepositManager(new XmlReader()).loadDeposit(depositDir, SyntheticBagGenerator.DATA_SUPPLIER_MAP);
+        deposit.setNbn(NBN);
+        return deposit;
+    }
+}
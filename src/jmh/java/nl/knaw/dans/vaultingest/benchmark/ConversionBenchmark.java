@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.apache.jena.rdf.model.Model;
+import org.datacite.schema.kernel_4.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the metadata conversion of a loaded deposit: the OAI-ORE model, its RDF/XML and JSON-LD serializations and the DataCite XML. The deposit and the inputs of the serializers are prepared
+ * once per trial, so that each benchmark only measures its own step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConversionBenchmark extends AbstractDepositBenchmark {
+    private Deposit deposit;
+    private OaiOreConverter oaiOreConverter;
+    private OaiOreSerializer oaiOreSerializer;
+    private DataciteConverter dataciteConverter;
+    private DataciteSerializer dataciteSerializer;
+    private Model model;
+    private Resource resource;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        deposit = loadDeposit();
+        oaiOreConverter = new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance());
+        oaiOreSerializer = new OaiOreSerializer(new ObjectMapper());
+        dataciteConverter = new DataciteConverter();
+        dataciteSerializer = new DataciteSerializer();
+        model = oaiOreConverter.convert(deposit);
+        resource = dataciteConverter.convert(deposit);
+    }
+
+    @Benchmark
+    public Model oaiOreConvert() {
+        return oaiOreConverter.convert(deposit);
+    }
+
+    @Benchmark
+    public String oaiOreSerializeAsRdf() {
+        return oaiOreSerializer.serializeAsRdf(model);
+    }
+
+    @Benchmark
+    public String oaiOreSerializeAsJsonLd() {
+        return oaiOreSerializer.serializeAsJsonLd(model);
+    }
+
+    @Benchmark
+    public Resource dataciteConvert() {
+        return dataciteConverter.convert(deposit);
+    }
+
+    @Benchmark
+    public String dataciteSerialize() {
+        return dataciteSerializer.serialize(resource);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DepositManager#loadDeposit}: reading the bag, parsing dataset.xml and files.xml and building the payload file list. With a threshold of 0, files.xml is always streamed instead
+ * of parsed into a DOM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DepositLoadBenchmark extends AbstractDepositBenchmark {
+
+    @Param({ "52428800", "0" })
+    public long filesXmlStreamingThreshold;
+
+    @Benchmark
+    public Deposit load() {
+        return new DepositManager(new XmlReader(), filesXmlStreamingThreshold).loadDeposit(depositDir, SyntheticBagGenerator.DATA_SUPPLIER_MAP);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+import nl.knaw.dans.vaultingest.core.util.MultiDigestInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MultiDigestInputStream} on an in-memory payload, so that only the digesting is measured and not the disk. The time is reported per payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DigestBenchmark {
+    private static final Map<String, List<SupportedAlgorithm>> ALGORITHMS = Map.of(
+        "SHA1", List.of(StandardSupportedAlgorithms.SHA1),
+        "SHA1+MD5+SHA256", List.of(StandardSupportedAlgorithms.SHA1, StandardSupportedAlgorithms.MD5, StandardSupportedAlgorithms.SHA256)
+    );
+
+    @Param({ "65536", "16777216" })
+    public int payloadSize;
+
+    @Param({ "SHA1", "SHA1+MD5+SHA256" })
+    public String algorithms;
+
+    private byte[] payload;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42L).nextBytes(payload);
+        buffer = new byte[8192];
+    }
+
+    @Benchmark
+    public Map<SupportedAlgorithm, String> multiDigestInputStream() throws IOException, NoSuchAlgorithmException {
+        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(payload), ALGORITHMS.get(algorithms))) {
+            drain(input);
+            return input.getChecksums();
+        }
+    }
+
+    private void drain(InputStream input) throws IOException {
+        while (input.read(buffer) >= 0) {
+            // only the side effect of digesting is needed
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.rdabag.DefaultRdaBagWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriter;
+import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriterMode;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ZIP step of the conversion for both {@link RdaBagWriterMode}s. The metadata is generated once per trial (for {@link RdaBagWriterMode#IN_PLACE} this modifies the synthetic
+ * deposit), so that the benchmark only measures {@link RdaBagWriter#writeZip(Path)}. The ZIP file is removed after each invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RdaBagWriterBenchmark extends AbstractDepositBenchmark {
+
+    @Param({ "IN_PLACE", "STREAMING" })
+    public RdaBagWriterMode mode;
+
+    private RdaBagWriter writer;
+    private Path rdaBag;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        var factory = new DefaultRdaBagWriterFactory(new ObjectMapper(), TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance(), mode);
+        writer = factory.createRdaBagWriter(loadDeposit());
+        writer.generateMetadata();
+        rdaBag = workDir.resolve("rda-bag.zip");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteZip() throws IOException {
+        Files.deleteIfExists(rdaBag);
+    }
+
+    @Benchmark
+    public Path writeZip() throws IOException {
+        writer.writeZip(rdaBag);
+        return rdaBag;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.benchmark;
+
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+import nl.knaw.dans.vaultingest.core.util.MultiDigester;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Generates a synthetic deposit for the benchmarks. The DDM is taken from the "audiences" test deposit, so that it exercises all mapping rules; the payload consists of a configurable number of
+ * files of a configurable size with pseudo-random content, each described in files.xml. The bag has a sha1 payload and tag manifest. The same seed always produces the same deposit.
+ */
+public class SyntheticBagGenerator {
+    static final String BAG_NAME = "synthetic";
+    static final String DEPOSITOR = "user001";
+    static final Map<String, String> DATA_SUPPLIER_MAP = Map.of(DEPOSITOR, "Synthetic data supplier");
+
+    private static final String DDM_RESOURCE = "/input/c169676f-5315-4d86-bde0-a62dbc915228/audiences/metadata/dataset.xml";
+    private static final SupportedAlgorithm ALGORITHM = StandardSupportedAlgorithms.SHA1;
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final String[] ACCESSIBLE_TO_RIGHTS = { "ANONYMOUS", "KNOWN", "RESTRICTED_REQUEST", "NONE" };
+
+    private final int fileCount;
+    private final long fileSize;
+    private final long seed;
+
+    public SyntheticBagGenerator(int fileCount, long fileSize) {
+        this(fileCount, fileSize, 42L);
+    }
+
+    public SyntheticBagGenerator(int fileCount, long fileSize, long seed) {
+        if (fileCount < 1) {
+            throw new IllegalArgumentException("fileCount must be at least 1");
+        }
+        if (fileSize < 0) {
+            throw new IllegalArgumentException("fileSize must not be negative");
+        }
+        this.fileCount = fileCount;
+        this.fileSize = fileSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the deposit in a new directory under {@code parentDir}.
+     *
+     * @param parentDir the directory to create the deposit in
+     * @return the deposit directory
+     */
+    public Path generate(Path parentDir) throws IOException {
+        var random = new Random(seed);
+        var depositDir = parentDir.resolve(new UUID(random.nextLong(), random.nextLong()).toString());
+        var bagDir = depositDir.resolve(BAG_NAME);
+        Files.createDirectories(bagDir.resolve("metadata"));
+
+        var payloadManifest = new TreeMap<String, String>();
+        var buffer = new byte[64 * 1024];
+
+        for (int i = 0; i < fileCount; i++) {
+            var filepath = getFilepath(i);
+            var file = bagDir.resolve(filepath);
+            Files.createDirectories(file.getParent());
+
+            try (var output = Files.newOutputStream(file)) {
+                writeRandomBytes(output, random, buffer);
+            }
+
+            payloadManifest.put(filepath, digest(file));
+        }
+
+        writeFilesXml(bagDir.resolve("metadata/files.xml"));
+
+        try (InputStream ddm = SyntheticBagGenerator.class.getResourceAsStream(DDM_RESOURCE)) {
+            if (ddm == null) {
+                throw new IllegalStateException("Resource not found on classpath: " + DDM_RESOURCE);
+            }
+            Files.copy(ddm, bagDir.resolve("metadata/dataset.xml"));
+        }
+
+        Files.writeString(bagDir.resolve("bagit.txt"), "BagIt-Version: 0.97\nTag-File-Character-Encoding: UTF-8\n");
+        Files.writeString(bagDir.resolve("bag-info.txt"), String.format(
+            "Payload-Oxum: %d.%d\nBagging-Date: 2023-01-01\nCreated: 2023-01-01T00:00:00.000+00:00\n", fileSize * fileCount, fileCount));
+
+        writeManifest(bagDir.resolve("manifest-sha1.txt"), payloadManifest);
+
+        var tagManifest = new TreeMap<String, String>();
+        for (var tagFile : List.of("bagit.txt", "bag-info.txt", "manifest-sha1.txt", "metadata/dataset.xml", "metadata/files.xml")) {
+            tagManifest.put(tagFile, digest(bagDir.resolve(tagFile)));
+        }
+        writeManifest(bagDir.resolve("tagmanifest-sha1.txt"), tagManifest);
+
+        var bagId = new UUID(random.nextLong(), random.nextLong());
+        Files.writeString(depositDir.resolve("deposit.properties"), String.join("\n",
+            "bag-store.bag-id=" + bagId,
+            "dataverse.bag-id=urn:uuid:" + bagId,
+            "creation.timestamp=2023-01-01T00:00:00.000+00:00",
+            "deposit.origin=SWORD2",
+            "depositor.userId=" + DEPOSITOR,
+            "state.label=SUBMITTED",
+            "bag-store.bag-name=" + BAG_NAME,
+            "dataverse.sword-token=sword:" + bagId,
+            ""));
+
+        return depositDir;
+    }
+
+    private String getFilepath(int i) {
+        return String.format("data/dir-%04d/file-%06d.bin", i / FILES_PER_DIRECTORY, i);
+    }
+
+    private void writeRandomBytes(OutputStream output, Random random, byte[] buffer) throws IOException {
+        long remaining = fileSize;
+
+        while (remaining > 0) {
+            random.nextBytes(buffer);
+            var length = (int) Math.min(buffer.length, remaining);
+            output.write(buffer, 0, length);
+            remaining -= length;
+        }
+    }
+
+    private void writeFilesXml(Path filesXml) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(filesXml, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<files xmlns:dcterms=\"http://purl.org/dc/terms/\" xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\">\n");
+
+            for (int i = 0; i < fileCount; i++) {
+                writer.write("    <file filepath=\"" + getFilepath(i) + "\">\n");
+                writer.write("        <dcterms:format>application/octet-stream</dcterms:format>\n");
+                if (i % 10 == 0) {
+                    writer.write("        <dcterms:description>Synthetic file number " + i + "</dcterms:description>\n");
+                }
+                writer.write("        <accessibleToRights>" + ACCESSIBLE_TO_RIGHTS[i % ACCESSIBLE_TO_RIGHTS.length] + "</accessibleToRights>\n");
+                writer.write("        <visibleToRights>ANONYMOUS</visibleToRights>\n");
+                writer.write("    </file>\n");
+            }
+
+            writer.write("</files>\n");
+        }
+    }
+
+    private void writeManifest(Path manifest, Map<String, String> checksums) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            for (var entry : checksums.entrySet()) {
+                writer.write(entry.getValue() + "  " + entry.getKey() + "\n");
+            }
+        }
+    }
+
+    private String digest(Path file) throws IOException {
+        try {
+            return MultiDigester.digest(file, List.of(ALGORITHM)).get(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generates a deposit outside the benchmarks, e.g. for profiling. Arguments: target directory, number of files, size of each file in bytes.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: SyntheticBagGenerator <target-dir> <file-count> <file-size>");
+            System.exit(1);
+        }
+
+        var depositDir = new SyntheticBagGenerator(Integer.parseInt(args[1]), Long.parseLong(args[2])).generate(Path.of(args[0]));
+        System.out.println(depositDir);
+    }
+}
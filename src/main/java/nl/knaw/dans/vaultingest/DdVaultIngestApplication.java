@@ -16,6 +16,8 @@
 
 package nl.knaw.dans.vaultingest;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
@@ -23,26 +25,42 @@ import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.util.ClientProxyBuilder;
 import nl.knaw.dans.lib.util.ManagedExecutorService;
 import nl.knaw.dans.lib.util.PingHealthCheck;
+import nl.knaw.dans.validatedansbag.client.api.ValidateCommandDto;
 import nl.knaw.dans.vaultcatalog.client.ApiClient;
 import nl.knaw.dans.vaultcatalog.client.DefaultApi;
+import nl.knaw.dans.vaultingest.client.AsyncBagValidator;
+import nl.knaw.dans.vaultingest.client.AsyncBagValidatorAdapter;
+import nl.knaw.dans.vaultingest.client.AsyncVaultCatalogClient;
+import nl.knaw.dans.vaultingest.client.AsyncVaultCatalogClientAdapter;
+import nl.knaw.dans.vaultingest.client.BagValidator;
+import nl.knaw.dans.vaultingest.client.CachingBagValidator;
+import nl.knaw.dans.vaultingest.client.CachingVaultCatalogClient;
 import nl.knaw.dans.vaultingest.client.DepositBagValidator;
 import nl.knaw.dans.vaultingest.client.MigrationBagValidator;
+import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClientImpl;
 import nl.knaw.dans.vaultingest.config.DdVaultIngestFlowConfig;
 import nl.knaw.dans.vaultingest.core.ConvertToRdaBagTaskFactory;
+import nl.knaw.dans.vaultingest.core.DepositPipeline;
+import nl.knaw.dans.vaultingest.core.DepositScheduler;
+import nl.knaw.dans.vaultingest.core.IngestMetrics;
+import nl.knaw.dans.vaultingest.core.ProcessingStage;
 import nl.knaw.dans.vaultingest.core.deposit.CsvLanguageResolver;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
 import nl.knaw.dans.vaultingest.core.deposit.DepositOutbox;
 import nl.knaw.dans.vaultingest.core.deposit.FileCountryResolver;
 import nl.knaw.dans.vaultingest.core.deposit.MigrationDepositManager;
 import nl.knaw.dans.vaultingest.core.inbox.AutoIngestArea;
-import nl.knaw.dans.vaultingest.core.inbox.IngestAreaDirectoryWatcher;
 import nl.knaw.dans.vaultingest.core.inbox.MigrationIngestArea;
 import nl.knaw.dans.vaultingest.core.rdabag.DefaultRdaBagWriterFactory;
 import nl.knaw.dans.vaultingest.core.util.IdMinter;
+import nl.knaw.dans.vaultingest.core.util.VirtualThreadExecutors;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Slf4j
 public class DdVaultIngestApplication extends Application<DdVaultIngestFlowConfig> {
@@ -78,13 +96,24 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestFlowConfi
             .httpClient(configuration.getValidateDansBag().getHttpClient())
             .defaultApiCtor(nl.knaw.dans.validatedansbag.client.resources.DefaultApi::new)
             .build();
-        var depositValidator = new DepositBagValidator(validateDansBagProxy);
-        var depositManager = new DepositManager(xmlReader);
+        BagValidator depositValidator = new DepositBagValidator(validateDansBagProxy);
+        var validationResultCacheDir = configuration.getValidateDansBag().getResultCacheDir();
+        var validationResultCacheTtl = java.time.Duration.ofMillis(configuration.getValidateDansBag().getResultCacheTtl().toMilliseconds());
 
+        if (validationResultCacheDir != null) {
+            depositValidator = new CachingBagValidator(depositValidator, ValidateCommandDto.PackageTypeEnum.DEPOSIT, validationResultCacheDir, validationResultCacheTtl);
+        }
+
+        var filesXmlStreamingThreshold = configuration.getIngestFlow().getFilesXmlStreamingThreshold().toBytes();
+        var depositManager = new DepositManager(xmlReader, filesXmlStreamingThreshold);
+
+        var ingestMetrics = new IngestMetrics(environment.metrics());
         var rdaBagWriterFactory = new DefaultRdaBagWriterFactory(
             environment.getObjectMapper(),
             languageResolver,
-            countryResolver
+            countryResolver,
+            configuration.getIngestFlow().getRdaBagWriterMode(),
+            ingestMetrics
         );
 
         var vaultCatalogProxy = new ClientProxyBuilder<ApiClient, DefaultApi>()
@@ -93,8 +122,36 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestFlowConfi
             .httpClient(configuration.getVaultCatalog().getHttpClient())
             .defaultApiCtor(DefaultApi::new)
             .build();
-        var vaultCatalogClient = new VaultCatalogClientImpl(vaultCatalogProxy);
+        VaultCatalogClient vaultCatalogClient = new VaultCatalogClientImpl(vaultCatalogProxy);
+
+        if (configuration.getVaultCatalog().getCache().isEnabled()) {
+            var cachingVaultCatalogClient = configuration.getVaultCatalog().getCache().build(vaultCatalogClient);
+            environment.metrics().register(MetricRegistry.name(CachingVaultCatalogClient.class, "hits"), (Gauge<Long>) cachingVaultCatalogClient::getHitCount);
+            environment.metrics().register(MetricRegistry.name(CachingVaultCatalogClient.class, "misses"), (Gauge<Long>) cachingVaultCatalogClient::getMissCount);
+            environment.metrics().register(MetricRegistry.name(CachingVaultCatalogClient.class, "size"), (Gauge<Integer>) cachingVaultCatalogClient::getSize);
+            vaultCatalogClient = cachingVaultCatalogClient;
+        }
+
         var idMinter = new IdMinter();
+        var stageLimits = configuration.getIngestFlow().getStageLimits().build();
+
+        // Adapters that let the pipeline's VALIDATION and CATALOG workers continue while waiting for a response
+        Executor remoteCallExecutor = null;
+        AsyncBagValidator asyncDepositValidator = null;
+        AsyncVaultCatalogClient asyncVaultCatalogClient = null;
+        var pipelineConfig = configuration.getIngestFlow().getPipeline();
+
+        if (pipelineConfig.isEnabled() && pipelineConfig.isAsyncRemoteCalls() && !VirtualThreadExecutors.isSupported()) {
+            log.warn("Virtual threads are not supported by this Java runtime ({}); the pipeline waits for remote calls on its workers instead", Runtime.version());
+        }
+        else if (pipelineConfig.isEnabled() && pipelineConfig.isAsyncRemoteCalls()) {
+            var executorService = VirtualThreadExecutors.newThreadPerTaskExecutor("vault-ingest-remote-", "remote calls");
+            environment.lifecycle().manage(new ManagedExecutorService(executorService));
+            registerExecutorGauges(environment, "remote-calls", executorService);
+            remoteCallExecutor = executorService;
+            asyncDepositValidator = new AsyncBagValidatorAdapter(depositValidator, remoteCallExecutor);
+            asyncVaultCatalogClient = new AsyncVaultCatalogClientAdapter(vaultCatalogClient, remoteCallExecutor);
+        }
 
         var autoIngestConvertToRdaBagTaskFactory = new ConvertToRdaBagTaskFactory(
             configuration.getIngestFlow().getAutoIngest().getDataSuppliers(),
@@ -103,35 +160,94 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestFlowConfi
             depositValidator,
             idMinter,
             depositManager,
-            configuration.getIngestFlow().getRdaBagOutputDir()
+            configuration.getIngestFlow().getRdaBagOutputDir(),
+            stageLimits,
+            ingestMetrics,
+            asyncDepositValidator,
+            asyncVaultCatalogClient
         );
 
-        var taskQueue = configuration.getIngestFlow().getTaskQueue().build(environment);
+        Executor taskQueue;
 
-        environment.lifecycle().manage(new ManagedExecutorService(taskQueue));
+        if (configuration.getIngestFlow().getPipeline().isEnabled()) {
+            var pipeline = configuration.getIngestFlow().getPipeline().build();
+            for (var stage : ProcessingStage.values()) {
+                var name = stage.name().toLowerCase();
+                environment.metrics().register(MetricRegistry.name(DepositPipeline.class, name, "queue-depth"), (Gauge<Integer>) () -> pipeline.getQueueDepth(stage));
+                environment.metrics().register(MetricRegistry.name(DepositPipeline.class, name, "active-workers"), (Gauge<Integer>) () -> pipeline.getActiveWorkers(stage));
+                environment.metrics().register(MetricRegistry.name(DepositPipeline.class, name, "in-flight"), (Gauge<Integer>) () -> pipeline.getInFlight(stage));
+            }
+            environment.lifecycle().manage(pipeline);
+            taskQueue = pipeline;
+        }
+        else {
+            var useVirtualThreads = configuration.getIngestFlow().isUseVirtualThreads();
+            if (useVirtualThreads && !VirtualThreadExecutors.isSupported()) {
+                log.warn("Virtual threads are not supported by this Java runtime ({}); using taskQueue for deposit processing instead", Runtime.version());
+                useVirtualThreads = false;
+            }
+            var executorService = useVirtualThreads
+                ? VirtualThreadExecutors.newThreadPerTaskExecutor("vault-ingest-deposit-", "deposit processing")
+                : configuration.getIngestFlow().getTaskQueue().build(environment);
+            environment.lifecycle().manage(new ManagedExecutorService(executorService));
+            registerExecutorGauges(environment, "task-queue", executorService);
+            taskQueue = executorService;
+        }
 
-        var ingestAreaDirectoryWatcher = new IngestAreaDirectoryWatcher(
-            500,
-            configuration.getIngestFlow().getAutoIngest().getInbox()
-        );
+        if (configuration.getIngestFlow().getScheduler().isEnabled()) {
+            var scheduler = configuration.getIngestFlow().getScheduler().build(taskQueue, environment.metrics());
+            environment.metrics().register(MetricRegistry.name(DepositScheduler.class, "queued-deposits"), (Gauge<Integer>) scheduler::getQueuedDeposits);
+            environment.metrics().register(MetricRegistry.name(DepositScheduler.class, "queued-bytes"), (Gauge<Long>) scheduler::getQueuedCost);
+            environment.metrics().register(MetricRegistry.name(DepositScheduler.class, "in-flight"), (Gauge<Integer>) scheduler::getInFlight);
+            environment.lifecycle().manage(scheduler);
+            taskQueue = scheduler;
+        }
+
+        var autoIngestWatcher = configuration.getIngestFlow().getAutoIngestWatcher().build(configuration.getIngestFlow().getAutoIngest().getInbox());
 
         environment.lifecycle().manage(new AutoIngestArea(
             taskQueue,
-            ingestAreaDirectoryWatcher,
+            autoIngestWatcher,
             autoIngestConvertToRdaBagTaskFactory,
             new DepositOutbox(configuration.getIngestFlow().getAutoIngest().getOutbox())));
 
-        var migrationDepositValidator = new MigrationBagValidator(validateDansBagProxy);
-        var migrationDepositManager = new MigrationDepositManager(xmlReader);
+        BagValidator migrationDepositValidator = new MigrationBagValidator(validateDansBagProxy);
+
+        if (validationResultCacheDir != null) {
+            migrationDepositValidator = new CachingBagValidator(migrationDepositValidator, ValidateCommandDto.PackageTypeEnum.MIGRATION, validationResultCacheDir, validationResultCacheTtl);
+        }
+
+        var migrationDepositManager = new MigrationDepositManager(xmlReader, filesXmlStreamingThreshold);
+
+        VaultCatalogClient migrationVaultCatalogClient = vaultCatalogClient;
+        AsyncBagValidator asyncMigrationDepositValidator = null;
+        AsyncVaultCatalogClient asyncMigrationVaultCatalogClient = null;
+
+        if (remoteCallExecutor != null) {
+            asyncMigrationDepositValidator = new AsyncBagValidatorAdapter(migrationDepositValidator, remoteCallExecutor);
+            asyncMigrationVaultCatalogClient = new AsyncVaultCatalogClientAdapter(vaultCatalogClient, remoteCallExecutor);
+        }
+
+        if (configuration.getVaultCatalog().getBatching().isEnabled()) {
+            var batchingVaultCatalogClient = configuration.getVaultCatalog().getBatching().build(vaultCatalogClient);
+            environment.lifecycle().manage(batchingVaultCatalogClient);
+            migrationVaultCatalogClient = batchingVaultCatalogClient;
+            // the batching client completes a future per deposit, so no remote-call thread needs to wait for a batch
+            asyncMigrationVaultCatalogClient = batchingVaultCatalogClient;
+        }
 
         var migrationIngestConvertToRdaBagTaskFactory = new ConvertToRdaBagTaskFactory(
             configuration.getIngestFlow().getMigration().getDataSuppliers(),
             rdaBagWriterFactory,
-            vaultCatalogClient,
+            migrationVaultCatalogClient,
             migrationDepositValidator,
             idMinter,
             migrationDepositManager,
-            configuration.getIngestFlow().getRdaBagOutputDir()
+            configuration.getIngestFlow().getRdaBagOutputDir(),
+            stageLimits,
+            ingestMetrics,
+            asyncMigrationDepositValidator,
+            asyncMigrationVaultCatalogClient
         );
 
         // TODO: implement API to call this.
@@ -147,4 +263,13 @@ public class DdVaultIngestApplication extends Application<DdVaultIngestFlowConfi
             new PingHealthCheck("DansBagValidator", validateDansBagProxy.getApiClient().getHttpClient(), configuration.getValidateDansBag().getPingUrl()));
 
     }
+
+    // only a thread pool has a queue and a fixed set of threads to report on; a virtual thread per task executor starts every task right away
+    private void registerExecutorGauges(Environment environment, String name, ExecutorService executorService) {
+        if (executorService instanceof ThreadPoolExecutor threadPoolExecutor) {
+            environment.metrics().register(MetricRegistry.name(DdVaultIngestApplication.class, name, "queue-depth"), (Gauge<Integer>) () -> threadPoolExecutor.getQueue().size());
+            environment.metrics().register(MetricRegistry.name(DdVaultIngestApplication.class, name, "active-threads"), (Gauge<Integer>) threadPoolExecutor::getActiveCount);
+            environment.metrics().register(MetricRegistry.name(DdVaultIngestApplication.class, name, "pool-size"), (Gauge<Integer>) threadPoolExecutor::getPoolSize);
+        }
+    }
 }
@@ -41,9 +41,13 @@ public abstract class AbstractBagValidator implements BagValidator {
             .bagLocation(bagDir.toString())
             .packageType(getPackageType());
 
+        var event = RemoteCallEvent.start("dd-validate-dans-bag", "validate", getDepositId(bagDir));
+        var failed = true;
+
         try {
             log.debug("Validating bag {} with command {}", bagDir, command);
             var result = api.validateLocalDirPost(command);
+            failed = false;
             if (Boolean.FALSE.equals(result.getIsCompliant())) {
                 throw formatValidationError(result);
             }
@@ -52,6 +56,10 @@ public abstract class AbstractBagValidator implements BagValidator {
         catch (ApiException e) {
             throw new RuntimeException("Could not validate bag", e);
         }
+        finally {
+            // a bag that is not compliant is a successful call
+            event.finish(failed);
+        }
 
     }
 
@@ -70,5 +78,11 @@ public abstract class AbstractBagValidator implements BagValidator {
         );
     }
 
+    // the bag is the only directory in the deposit directory, whose name is the id of the deposit
+    private String getDepositId(Path bagDir) {
+        var depositDir = bagDir.toAbsolutePath().getParent();
+        return depositDir != null && depositDir.getFileName() != null ? depositDir.getFileName().toString() : bagDir.toString();
+    }
+
     protected abstract ValidateCommandDto.PackageTypeEnum getPackageType();
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import lombok.AllArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a blocking {@link BagValidator} on an executor. The generated dd-validate-dans-bag client only has blocking calls; with an executor of virtual threads, a call that is waiting for the
+ * service does not hold on to a platform thread.
+ */
+@AllArgsConstructor
+public class AsyncBagValidatorAdapter implements AsyncBagValidator {
+    private final BagValidator delegate;
+    private final Executor executor;
+
+    @Override
+    public CompletableFuture<Void> validateAsync(Path bagDir) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                delegate.validate(bagDir);
+            }
+            catch (InvalidDepositException | IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
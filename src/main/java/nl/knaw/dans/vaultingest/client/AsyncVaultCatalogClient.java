@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link VaultCatalogClient}. The futures complete exceptionally with the exception that the corresponding blocking method would have thrown.
+ */
+public interface AsyncVaultCatalogClient {
+    CompletableFuture<DatasetDto> createDatasetForAsync(Deposit deposit);
+
+    CompletableFuture<VersionExportDto> addDatasetVersionForAsync(Deposit deposit);
+
+    CompletableFuture<Optional<DatasetDto>> findDatasetAsync(String swordToken);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import lombok.AllArgsConstructor;
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a blocking {@link VaultCatalogClient} on an executor. See {@link AsyncBagValidatorAdapter}.
+ */
+@AllArgsConstructor
+public class AsyncVaultCatalogClientAdapter implements AsyncVaultCatalogClient {
+    private final VaultCatalogClient delegate;
+    private final Executor executor;
+
+    @FunctionalInterface
+    private interface CatalogCall<T> {
+        T call() throws IOException;
+    }
+
+    @Override
+    public CompletableFuture<DatasetDto> createDatasetForAsync(Deposit deposit) {
+        return supplyAsync(() -> delegate.createDatasetFor(deposit));
+    }
+
+    @Override
+    public CompletableFuture<VersionExportDto> addDatasetVersionForAsync(Deposit deposit) {
+        return supplyAsync(() -> delegate.addDatasetVersionFor(deposit));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DatasetDto>> findDatasetAsync(String swordToken) {
+        return supplyAsync(() -> delegate.findDataset(swordToken));
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(CatalogCall<T> call) {
+        var depositId = RemoteCallContext.getDepositId();
+
+        return CompletableFuture.supplyAsync(() -> {
+            try (var scope = RemoteCallContext.forDeposit(depositId)) {
+                return call.call();
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
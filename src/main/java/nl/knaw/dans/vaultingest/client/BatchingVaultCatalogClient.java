@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorator that coalesces the skeleton record registrations of concurrently processed deposits into batches. A batch is submitted when it reaches the maximum size, or when the oldest
+ * registration in it has waited for the maximum delay, whichever comes first. Every registration has its own future, which completes with the result or the failure of that deposit only. The
+ * blocking methods wait for that future; the asynchronous ones return it, so that no thread is held while a registration waits for its batch.
+ *
+ * The vault catalog has no bulk endpoint, so by default the registrations of a batch are sent in parallel over a bounded number of connections; {@link #submit(List)} is the place to use a bulk
+ * endpoint once it exists. Lookups ({@link #findDataset(String)}) are not batched.
+ */
+@Slf4j
+public class BatchingVaultCatalogClient implements VaultCatalogClient, AsyncVaultCatalogClient, Managed {
+    private final VaultCatalogClient delegate;
+    private final int maxBatchSize;
+    private final Duration maxDelay;
+    private final ExecutorService submitters;
+    private final ScheduledExecutorService timer;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private List<Registration<?>> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean stopped;
+
+    public BatchingVaultCatalogClient(VaultCatalogClient delegate, int maxBatchSize, Duration maxDelay, int parallelism) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.submitters = Executors.newFixedThreadPool(parallelism, daemonThreads("vault-catalog-batch-"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("vault-catalog-batch-timer-"));
+    }
+
+    @Override
+    public DatasetDto createDatasetFor(Deposit deposit) throws IOException {
+        return await(createDatasetForAsync(deposit));
+    }
+
+    @Override
+    public VersionExportDto addDatasetVersionFor(Deposit deposit) throws IOException {
+        return await(addDatasetVersionForAsync(deposit));
+    }
+
+    @Override
+    public Optional<DatasetDto> findDataset(String swordToken) throws IOException {
+        return delegate.findDataset(swordToken);
+    }
+
+    @Override
+    public CompletableFuture<DatasetDto> createDatasetForAsync(Deposit deposit) {
+        return register(new Registration<>(deposit, delegate::createDatasetFor));
+    }
+
+    @Override
+    public CompletableFuture<VersionExportDto> addDatasetVersionForAsync(Deposit deposit) {
+        return register(new Registration<>(deposit, delegate::addDatasetVersionFor));
+    }
+
+    @Override
+    public CompletableFuture<Optional<DatasetDto>> findDatasetAsync(String swordToken) {
+        var depositId = RemoteCallContext.getDepositId();
+        return CompletableFuture.supplyAsync(() -> {
+            try (var scope = RemoteCallContext.forDeposit(depositId)) {
+                return delegate.findDataset(swordToken);
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, submitters);
+    }
+
+    /**
+     * @return the number of registrations that are waiting to be submitted
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void start() {
+        // threads are started on demand
+    }
+
+    /**
+     * Submits the registrations that are still waiting, waits for them to finish and releases the threads. Registrations after this are rejected.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        List<Registration<?>> batch;
+
+        synchronized (lock) {
+            stopped = true;
+            batch = takePending();
+        }
+
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+
+        timer.shutdownNow();
+        submitters.shutdown();
+
+        if (!submitters.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Not all skeleton record registrations finished within 30 seconds");
+        }
+    }
+
+    /**
+     * Submits a batch of registrations. Each registration must be completed, successfully or exceptionally, through {@link Registration#run()}.
+     *
+     * @param batch the registrations, in the order in which they were made
+     */
+    protected void submit(List<Registration<?>> batch) {
+        log.debug("Submitting batch of {} skeleton record registrations", batch.size());
+
+        for (var registration : batch) {
+            submitters.execute(registration::run);
+        }
+    }
+
+    private <T> CompletableFuture<T> register(Registration<T> registration) {
+        List<Registration<?>> batch = null;
+
+        synchronized (lock) {
+            if (stopped) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Vault catalog client has been stopped"));
+            }
+
+            pending.add(registration);
+
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            }
+            else if (scheduledFlush == null) {
+                scheduledFlush = timer.schedule(this::flush, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (batch != null) {
+            submit(batch);
+        }
+
+        return registration.result;
+    }
+
+    private void flush() {
+        List<Registration<?>> batch;
+
+        synchronized (lock) {
+            scheduledFlush = null;
+            batch = takePending();
+        }
+
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    // must be called with lock held
+    private List<Registration<?>> takePending() {
+        var batch = pending;
+        pending = new ArrayList<>();
+
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        return batch;
+    }
+
+    private static <T> T await(CompletableFuture<T> result) throws IOException {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the vault catalog", e);
+        }
+        catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        var count = new AtomicInteger();
+
+        return runnable -> {
+            var thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    interface CatalogCall<T> {
+        T call(Deposit deposit) throws IOException;
+    }
+
+    /**
+     * A registration of one deposit that is waiting to be submitted.
+     */
+    protected static class Registration<T> {
+        private final Deposit deposit;
+        private final CatalogCall<T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Registration(Deposit deposit, CatalogCall<T> call) {
+            this.deposit = deposit;
+            this.call = call;
+        }
+
+        public Deposit getDeposit() {
+            return deposit;
+        }
+
+        /**
+         * Performs the registration with the delegate and completes it with the result or the failure.
+         */
+        public void run() {
+            try {
+                result.complete(call.call(deposit));
+            }
+            catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.client.api.ValidateCommandDto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Decorator that remembers the outcome of validating a bag, so that a bag that is processed again unchanged, for example after a transient failure further on in the flow, is not sent to the
+ * validation service again.
+ *
+ * The outcomes are stored in a directory, one file per bag, so that they survive a restart. A bag is identified by a fingerprint of its bagit.txt, bag-info.txt and tag manifests, together with the
+ * package type. The tag manifests contain the checksums of the payload manifests and the metadata files, so any change to the bag that is recorded in its manifests results in a new fingerprint,
+ * and thus in a new validation. A bag without tag manifests is always validated. Only compliant and non-compliant outcomes are stored; errors from the service are not. The directory may be emptied
+ * at any time.
+ *
+ * An outcome is used for at most the configured time to live, so that bags are validated again against new versions of the validation service and its rules. Expired outcomes are removed from the
+ * directory when the validator is created and after that at most once per hour.
+ *
+ * Note that a change to a payload file that is not reflected in the manifests, such as corruption on disk, is not detected when an unchanged bag is processed again within the time to live: the
+ * stored outcome is used and the payload checksums are not verified again by the service.
+ */
+@Slf4j
+public class CachingBagValidator implements BagValidator {
+    private static final String COMPLIANT = "compliant";
+    private static final String NOT_COMPLIANT = "not-compliant";
+    private static final Duration MAX_PRUNE_INTERVAL = Duration.ofHours(1);
+
+    private final BagValidator delegate;
+    private final ValidateCommandDto.PackageTypeEnum packageType;
+    private final Path cacheDir;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private volatile Instant nextPrune;
+
+    public CachingBagValidator(BagValidator delegate, ValidateCommandDto.PackageTypeEnum packageType, Path cacheDir, Duration ttl) throws IOException {
+        this(delegate, packageType, cacheDir, ttl, Clock.systemUTC());
+    }
+
+    CachingBagValidator(BagValidator delegate, ValidateCommandDto.PackageTypeEnum packageType, Path cacheDir, Duration ttl, Clock clock) throws IOException {
+        this.delegate = delegate;
+        this.packageType = packageType;
+        this.cacheDir = cacheDir;
+        this.ttl = ttl;
+        this.clock = clock;
+        Files.createDirectories(cacheDir);
+        prune();
+    }
+
+    @Override
+    public void validate(Path bagDir) throws InvalidDepositException, IOException {
+        if (bagDir == null) {
+            throw new InvalidDepositException("Bag directory cannot be null");
+        }
+
+        var fingerprint = fingerprint(bagDir);
+
+        if (fingerprint.isEmpty()) {
+            log.debug("Bag {} has no tag manifest, not using cached validation result", bagDir);
+            delegate.validate(bagDir);
+            return;
+        }
+
+        var entry = cacheDir.resolve(fingerprint.get());
+        var lines = readEntry(entry);
+
+        if (!lines.isEmpty()) {
+            log.debug("Using cached validation result for bag {}", bagDir);
+
+            if (NOT_COMPLIANT.equals(lines.get(0))) {
+                throw new InvalidDepositException(String.join("\n", lines.subList(1, lines.size())));
+            }
+            return;
+        }
+
+        try {
+            delegate.validate(bagDir);
+            store(entry, COMPLIANT);
+        }
+        catch (InvalidDepositException e) {
+            store(entry, NOT_COMPLIANT + "\n" + e.getMessage());
+            throw e;
+        }
+    }
+
+    Optional<String> fingerprint(Path bagDir) throws IOException {
+        List<Path> tagManifests;
+
+        try (var files = Files.list(bagDir)) {
+            tagManifests = files
+                .filter(p -> p.getFileName().toString().startsWith("tagmanifest-"))
+                .sorted()
+                .toList();
+        }
+
+        if (tagManifests.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var digest = createSha256();
+        digest.update(packageType.name().getBytes(StandardCharsets.UTF_8));
+
+        var files = new ArrayList<Path>();
+        files.add(bagDir.resolve("bagit.txt"));
+        files.add(bagDir.resolve("bag-info.txt"));
+        files.addAll(tagManifests);
+
+        for (var file : files) {
+            // The name is included, so that moving content from one file to another is also noticed
+            digest.update((byte) 0);
+            digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+
+            if (Files.exists(file)) {
+                digest.update(Files.readAllBytes(file));
+            }
+        }
+
+        return Optional.of(HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private void store(Path entry, String content) {
+        try {
+            var tempFile = Files.createTempFile(cacheDir, ".", ".tmp");
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            // the modification time is the time the outcome was stored, as seen by the clock that decides when it expires
+            Files.setLastModifiedTime(tempFile, FileTime.from(clock.instant()));
+            Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            // The cache is only an optimization; the outcome itself is still valid
+            log.warn("Could not store validation result in {}", entry, e);
+        }
+
+        if (!clock.instant().isBefore(nextPrune)) {
+            prune();
+        }
+    }
+
+    private List<String> readEntry(Path entry) throws IOException {
+        try {
+            if (isExpired(entry)) {
+                return List.of();
+            }
+
+            return Files.readAllLines(entry, StandardCharsets.UTF_8);
+        }
+        catch (NoSuchFileException e) {
+            // not stored yet, or removed by a concurrent prune
+            return List.of();
+        }
+    }
+
+    private boolean isExpired(Path entry) throws IOException {
+        return !Files.getLastModifiedTime(entry).toInstant().plus(ttl).isAfter(clock.instant());
+    }
+
+    /**
+     * Removes the expired outcomes. Errors are logged and otherwise ignored, as an outcome that is not removed is still not used once it has expired.
+     */
+    void prune() {
+        nextPrune = clock.instant().plus(ttl.compareTo(MAX_PRUNE_INTERVAL) < 0 ? ttl : MAX_PRUNE_INTERVAL);
+
+        try (var entries = Files.list(cacheDir)) {
+            for (var entry : (Iterable<Path>) entries::iterator) {
+                try {
+                    if (Files.isRegularFile(entry) && isExpired(entry)) {
+                        Files.deleteIfExists(entry);
+                    }
+                }
+                catch (IOException e) {
+                    log.debug("Could not remove expired validation result {}", entry, e);
+                }
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not remove expired validation results from {}", cacheDir, e);
+        }
+    }
+
+    private static MessageDigest createSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator that caches the datasets found by {@link #findDataset(String)}, so that successive versions of the same dataset in a batch of deposits do not each need a lookup in the vault catalog.
+ * The cache holds at most maxSize datasets, evicting the least recently used one, and an entry expires ttl after it was fetched. Datasets that are not found are not cached.
+ *
+ * When a version is added through {@link #addDatasetVersionFor(Deposit)} the cached dataset is updated with the new version export, so that the next version number is computed correctly. If
+ * adding the version fails, the dataset is evicted, as its state in the catalog is then unknown.
+ */
+@Slf4j
+public class CachingVaultCatalogClient implements VaultCatalogClient {
+    private final VaultCatalogClient delegate;
+    private final int maxSize;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // guarded by itself; access-ordered, so that the eldest entry is the least recently used
+    private final Map<String, Entry> datasets;
+
+    private static class Entry {
+        private final DatasetDto dataset;
+        private final Instant expires;
+
+        private Entry(DatasetDto dataset, Instant expires) {
+            this.dataset = dataset;
+            this.expires = expires;
+        }
+    }
+
+    public CachingVaultCatalogClient(VaultCatalogClient delegate, int maxSize, Duration ttl) {
+        this(delegate, maxSize, ttl, Clock.systemUTC());
+    }
+
+    CachingVaultCatalogClient(VaultCatalogClient delegate, int maxSize, Duration ttl, Clock clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.datasets = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CachingVaultCatalogClient.this.maxSize;
+            }
+        };
+    }
+
+    @Override
+    public DatasetDto createDatasetFor(Deposit deposit) throws IOException {
+        return delegate.createDatasetFor(deposit);
+    }
+
+    @Override
+    public VersionExportDto addDatasetVersionFor(Deposit deposit) throws IOException {
+        VersionExportDto versionExport;
+
+        try {
+            versionExport = delegate.addDatasetVersionFor(deposit);
+        }
+        catch (IOException | RuntimeException e) {
+            evictByNbn(deposit.getNbn());
+            throw e;
+        }
+
+        addVersionExport(deposit.getNbn(), versionExport);
+        return versionExport;
+    }
+
+    @Override
+    public Optional<DatasetDto> findDataset(String swordToken) throws IOException {
+        synchronized (datasets) {
+            var entry = datasets.get(swordToken);
+
+            if (entry != null) {
+                if (clock.instant().isBefore(entry.expires)) {
+                    hits.incrementAndGet();
+                    return Optional.of(entry.dataset);
+                }
+                datasets.remove(swordToken);
+            }
+        }
+
+        misses.incrementAndGet();
+        var dataset = delegate.findDataset(swordToken);
+
+        dataset.ifPresent(d -> {
+            synchronized (datasets) {
+                datasets.put(swordToken, new Entry(d, clock.instant().plus(ttl)));
+            }
+        });
+
+        return dataset;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        synchronized (datasets) {
+            return datasets.size();
+        }
+    }
+
+    private void addVersionExport(String nbn, VersionExportDto versionExport) {
+        synchronized (datasets) {
+            for (var entry : datasets.values()) {
+                if (Objects.equals(entry.dataset.getNbn(), nbn)) {
+                    // Replace the list rather than adding to it, so that a caller that is still reading the old list is not disturbed
+                    var versionExports = entry.dataset.getVersionExports() == null
+                        ? new ArrayList<VersionExportDto>()
+                        : new ArrayList<>(entry.dataset.getVersionExports());
+                    versionExports.add(versionExport);
+                    entry.dataset.setVersionExports(versionExports);
+                    log.debug("Added version {} of dataset {} to cache", versionExport.getOcflObjectVersionNumber(), nbn);
+                }
+            }
+        }
+    }
+
+    private void evictByNbn(String nbn) {
+        synchronized (datasets) {
+            datasets.values().removeIf(entry -> Objects.equals(entry.dataset.getNbn(), nbn));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+/**
+ * The deposit on whose behalf remote calls are made by the current thread, so that {@link RemoteCallEvent}s can be attributed to a deposit without passing its id to every client method. The
+ * asynchronous adapters take the deposit of the thread that submits a call to the thread that makes it.
+ */
+public final class RemoteCallContext {
+    private static final ThreadLocal<String> depositId = new ThreadLocal<>();
+
+    private RemoteCallContext() {
+    }
+
+    /**
+     * A scope in which remote calls are made for a deposit. Closing it restores the deposit of the enclosing scope, if any.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final String previous;
+
+        private Scope(String previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                depositId.remove();
+            }
+            else {
+                depositId.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Makes the current thread make remote calls for the given deposit until the returned scope is closed.
+     *
+     * @param id the id of the deposit, which is the name of its directory
+     * @return the scope, to be closed when the calls are done
+     */
+    public static Scope forDeposit(String id) {
+        var previous = depositId.get();
+        depositId.set(id);
+        return new Scope(previous);
+    }
+
+    /**
+     * @return the id of the deposit the current thread makes remote calls for, or null if it is not known
+     */
+    public static String getDepositId() {
+        return depositId.get();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for a call to dd-validate-dans-bag or the vault catalog, so that a recording shows how long each deposit waited for a remote service.
+ */
+@Name("nl.knaw.dans.vaultingest.RemoteCall")
+@Label("Remote Call")
+@Category({ "DANS", "Vault Ingest" })
+@Description("A call to a service that the ingest flow depends on")
+@StackTrace(false)
+class RemoteCallEvent extends Event {
+    @Label("Service")
+    String service;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Deposit Id")
+    @Description("The name of the directory of the deposit the call is made for, as in the ingest step events")
+    String depositId;
+
+    @Label("Failed")
+    boolean failed;
+
+    static RemoteCallEvent start(String service, String operation, String depositId) {
+        var event = new RemoteCallEvent();
+        event.begin();
+        event.service = service;
+        event.operation = operation;
+        event.depositId = depositId;
+        return event;
+    }
+
+    void finish(boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.failed = failed;
+            commit();
+        }
+    }
+}
@@ -29,6 +29,8 @@ import java.util.Optional;
 @Slf4j
 @AllArgsConstructor
 public class VaultCatalogClientImpl implements VaultCatalogClient {
+    private static final String SERVICE = "dd-vault-catalog";
+
     private final DefaultApi vaultCatalogApi;
 
     @Override
@@ -47,13 +49,20 @@ public class VaultCatalogClientImpl implements VaultCatalogClient {
             .dataSupplier(deposit.getDataSupplier())
             .addVersionExportsItem(versionExportDto);
 
+        var event = RemoteCallEvent.start(SERVICE, "addDataset", deposit.getId());
+        var failed = true;
+
         try {
             vaultCatalogApi.addDataset(datasetDto.getNbn(), datasetDto);
+            failed = false;
             return datasetDto;
         }
         catch (ApiException e) {
             throw new RuntimeException(e);
         }
+        finally {
+            event.finish(failed);
+        }
     }
 
     @Override
@@ -65,22 +74,37 @@ public class VaultCatalogClientImpl implements VaultCatalogClient {
             .createdTimestamp(deposit.getCreationTimestamp())
             .skeletonRecord(true);
 
+        var event = RemoteCallEvent.start(SERVICE, "setVersionExport", deposit.getId());
+        var failed = true;
+
         try {
             vaultCatalogApi.setVersionExport(deposit.getNbn(), versionExportDto.getOcflObjectVersionNumber(), versionExportDto);
+            failed = false;
             return versionExportDto;
         }
         catch (ApiException e) {
             throw new RuntimeException(e);
         }
+        finally {
+            event.finish(failed);
+        }
     }
 
     @Override
     public Optional<DatasetDto> findDataset(String swordToken) throws IOException {
+        var event = RemoteCallEvent.start(SERVICE, "getDatasetBySwordToken", RemoteCallContext.getDepositId());
+        var failed = true;
+
         try {
-            return Optional.ofNullable(vaultCatalogApi.getDatasetBySwordToken(swordToken));
+            var dataset = Optional.ofNullable(vaultCatalogApi.getDatasetBySwordToken(swordToken));
+            failed = false;
+            return dataset;
         }
         catch (ApiException e) {
             throw new RuntimeException(e);
         }
+        finally {
+            event.finish(failed);
+        }
     }
 }
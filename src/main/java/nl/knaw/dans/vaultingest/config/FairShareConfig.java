@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.FairSharePolicy;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Division of the scheduler's capacity over the depositors. See {@link FairSharePolicy}.
+ */
+@Getter
+public class FairShareConfig {
+    private boolean enabled = false;
+    @Min(1)
+    private int defaultWeight = 1;
+    /**
+     * Weights per depositor id (the keys of dataSuppliers).
+     */
+    @NotNull
+    private Map<String, @Min(1) Integer> weights = new HashMap<>();
+    /**
+     * Maximum number of deposits in processing per depositor id; depositors that are not listed are only limited by the scheduler's maxInFlight.
+     */
+    @NotNull
+    private Map<String, @Min(1) Integer> maxInFlight = new HashMap<>();
+
+    public FairSharePolicy build() {
+        return new FairSharePolicy(enabled, defaultWeight, weights, maxInFlight);
+    }
+}
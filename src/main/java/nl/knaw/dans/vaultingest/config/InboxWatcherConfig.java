@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaDirectoryWatcher;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaEventWatcher;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatcher;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatcherMode;
+
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Getter
+public class InboxWatcherConfig {
+    @NotNull
+    private IngestAreaWatcherMode mode = IngestAreaWatcherMode.EVENTS;
+    /**
+     * The interval for POLLING, and for EVENTS if the file system turns out not to support watching.
+     */
+    @NotNull
+    private Duration pollingInterval = Duration.milliseconds(500);
+
+    public IngestAreaWatcher build(Path directory) {
+        return switch (mode) {
+            case EVENTS -> new IngestAreaEventWatcher(directory, pollingInterval.toMilliseconds());
+            case POLLING -> new IngestAreaDirectoryWatcher(pollingInterval.toMilliseconds(), directory);
+        };
+    }
+}
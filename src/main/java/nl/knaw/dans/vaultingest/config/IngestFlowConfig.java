@@ -15,8 +15,11 @@
  */
 package nl.knaw.dans.vaultingest.config;
 
+import io.dropwizard.util.DataSize;
 import lombok.Getter;
 import nl.knaw.dans.lib.util.ExecutorServiceFactory;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriterMode;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -29,13 +32,30 @@ public class IngestFlowConfig {
     private InboxConfig autoIngest;
     @NotNull
     @Valid
+    private InboxWatcherConfig autoIngestWatcher = new InboxWatcherConfig();
+    @NotNull
+    @Valid
     private InboxConfig migration;
     @NotNull
     @Valid
     private ExecutorServiceFactory taskQueue;
+    private boolean useVirtualThreads = false;
+    @NotNull
+    @Valid
+    private StageLimitsConfig stageLimits = new StageLimitsConfig();
+    @NotNull
+    @Valid
+    private PipelineConfig pipeline = new PipelineConfig();
+    @NotNull
+    @Valid
+    private SchedulerConfig scheduler = new SchedulerConfig();
     @NotNull
     private Path rdaBagOutputDir;
     @NotNull
+    private RdaBagWriterMode rdaBagWriterMode = RdaBagWriterMode.IN_PLACE;
+    @NotNull
+    private DataSize filesXmlStreamingThreshold = DataSize.bytes(DepositManager.DEFAULT_FILES_XML_STREAMING_THRESHOLD);
+    @NotNull
     @Valid
     private LanguageConfig languages;
     @NotNull
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.DepositPipeline;
+import nl.knaw.dans.vaultingest.core.ProcessingStage;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Getter
+public class PipelineConfig {
+    private boolean enabled = false;
+    /**
+     * Whether the VALIDATION and CATALOG workers should hand off the calls to the remote services instead of waiting for the response.
+     */
+    private boolean asyncRemoteCalls = false;
+    @Min(1)
+    private int queueCapacity = 100;
+    @NotNull
+    private Map<ProcessingStage, @Min(1) Integer> workers = new EnumMap<>(ProcessingStage.class);
+
+    public DepositPipeline build() {
+        return new DepositPipeline(workers, queueCapacity);
+    }
+}
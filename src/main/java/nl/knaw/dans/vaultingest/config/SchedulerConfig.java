@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.util.DataSize;
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.DepositCostEstimator;
+import nl.knaw.dans.vaultingest.core.DepositScheduler;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.Executor;
+
+/**
+ * Scheduling of deposits by estimated size. See {@link DepositScheduler}.
+ */
+@Getter
+public class SchedulerConfig {
+    private boolean enabled = false;
+    @Min(1)
+    private int maxInFlight = 4;
+    @NotNull
+    private DataSize perFileCost = DataSize.mebibytes(1);
+    /**
+     * The amount by which the cost of a waiting deposit decreases for every second it waits.
+     */
+    @NotNull
+    private DataSize agingRate = DataSize.mebibytes(100);
+    @NotNull
+    @Valid
+    private FairShareConfig fairShare = new FairShareConfig();
+
+    public DepositScheduler build(Executor taskQueue, MetricRegistry metrics) {
+        return new DepositScheduler(taskQueue, new DepositCostEstimator(), maxInFlight, perFileCost.toBytes(), agingRate.toBytes(), fairShare.build(), metrics);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.ProcessingStage;
+import nl.knaw.dans.vaultingest.core.StageLimits;
+
+import javax.validation.constraints.Min;
+import java.util.EnumMap;
+
+/**
+ * The maximum number of deposits in each processing stage. A stage without a limit is only bounded by the number of threads.
+ */
+@Getter
+public class StageLimitsConfig {
+    @Min(1)
+    private Integer validation;
+    @Min(1)
+    private Integer load;
+    @Min(1)
+    private Integer catalog;
+    @Min(1)
+    private Integer conversion;
+    @Min(1)
+    private Integer zip;
+    @Min(1)
+    private Integer finish;
+
+    public StageLimits build() {
+        var limits = new EnumMap<ProcessingStage, Integer>(ProcessingStage.class);
+        limits.put(ProcessingStage.VALIDATION, validation);
+        limits.put(ProcessingStage.LOAD, load);
+        limits.put(ProcessingStage.CATALOG, catalog);
+        limits.put(ProcessingStage.CONVERSION, conversion);
+        limits.put(ProcessingStage.ZIP, zip);
+        limits.put(ProcessingStage.FINISH, finish);
+        return new StageLimits(limits);
+    }
+}
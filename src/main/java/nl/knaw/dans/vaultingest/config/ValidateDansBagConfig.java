@@ -16,11 +16,13 @@
 package nl.knaw.dans.vaultingest.config;
 
 import io.dropwizard.client.JerseyClientConfiguration;
+import io.dropwizard.util.Duration;
 import lombok.Data;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.nio.file.Path;
 
 @Data
 public class ValidateDansBagConfig {
@@ -35,4 +37,15 @@ public class ValidateDansBagConfig {
     @Valid
     @NotNull
     private JerseyClientConfiguration httpClient = new JerseyClientConfiguration();
+
+    /**
+     * Directory in which the validation results are kept, so that unchanged bags are not validated again. If not set, every bag is validated.
+     */
+    private Path resultCacheDir;
+
+    /**
+     * How long a validation result is used. After that, the bag is validated again, so that changes to the validation rules are picked up.
+     */
+    @NotNull
+    private Duration resultCacheTtl = Duration.days(1);
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.client.BatchingVaultCatalogClient;
+import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Batching of the skeleton record registrations of migration deposits. See {@link BatchingVaultCatalogClient}.
+ */
+@Getter
+public class VaultCatalogBatchingConfig {
+    private boolean enabled = false;
+    @Min(1)
+    private int maxBatchSize = 50;
+    @NotNull
+    private Duration maxDelay = Duration.milliseconds(200);
+    @Min(1)
+    private int parallelism = 8;
+
+    public BatchingVaultCatalogClient build(VaultCatalogClient delegate) {
+        return new BatchingVaultCatalogClient(delegate, maxBatchSize, java.time.Duration.ofMillis(maxDelay.toMilliseconds()), parallelism);
+    }
+}
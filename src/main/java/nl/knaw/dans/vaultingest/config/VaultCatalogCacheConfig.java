@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.client.CachingVaultCatalogClient;
+import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Caching of the datasets looked up by sword token. See {@link CachingVaultCatalogClient}.
+ */
+@Getter
+public class VaultCatalogCacheConfig {
+    private boolean enabled = false;
+    @Min(1)
+    private int maxSize = 1000;
+    @NotNull
+    private Duration ttl = Duration.minutes(5);
+
+    public CachingVaultCatalogClient build(VaultCatalogClient delegate) {
+        return new CachingVaultCatalogClient(delegate, maxSize, java.time.Duration.ofMillis(ttl.toMilliseconds()));
+    }
+}
@@ -31,4 +31,12 @@ public class VaultCatalogConfig {
     @Valid
     @NotNull
     private JerseyClientConfiguration httpClient;
+
+    @Valid
+    @NotNull
+    private VaultCatalogCacheConfig cache = new VaultCatalogCacheConfig();
+
+    @Valid
+    @NotNull
+    private VaultCatalogBatchingConfig batching = new VaultCatalogBatchingConfig();
 }
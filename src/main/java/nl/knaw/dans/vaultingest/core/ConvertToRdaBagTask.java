@@ -15,18 +15,23 @@
  */
 package nl.knaw.dans.vaultingest.core;
 
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultcatalog.api.DatasetDto;
 import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.client.AsyncBagValidator;
+import nl.knaw.dans.vaultingest.client.AsyncVaultCatalogClient;
 import nl.knaw.dans.vaultingest.client.BagValidator;
 import nl.knaw.dans.vaultingest.client.InvalidDepositException;
+import nl.knaw.dans.vaultingest.client.RemoteCallContext;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
 import nl.knaw.dans.vaultingest.core.deposit.Outbox;
 import nl.knaw.dans.vaultingest.core.rdabag.DefaultRdaBagWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriter;
 import nl.knaw.dans.vaultingest.core.util.IdMinter;
 import org.apache.commons.lang3.StringUtils;
 
@@ -34,13 +39,19 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 @Slf4j
 @RequiredArgsConstructor
 public class ConvertToRdaBagTask implements Runnable {
     @NonNull
+    @Getter
     private final Path path;
 
     @NonNull
@@ -60,56 +71,290 @@ public class ConvertToRdaBagTask implements Runnable {
     private final DepositManager depositManager;
     @NonNull
     private final Path dveOutbox;
+    @NonNull
+    private final StageLimits stageLimits;
+    @NonNull
+    private final IngestMetrics metrics;
+    // optional; if set, runStageAsync does not wait for the remote services
+    private final AsyncBagValidator asyncBagValidator;
+    private final AsyncVaultCatalogClient asyncVaultCatalogClient;
 
     private Deposit deposit;
+    private RdaBagWriter rdaBagWriter;
+    private DepositJournal journal;
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    /**
+     * Returns a future that completes when the deposit has been moved to the outbox, whether it succeeded or failed.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
 
     public void run() {
-        log.info("Processing deposit on path {}", path);
+        for (var stage : ProcessingStage.values()) {
+            if (!runStage(stage)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs one stage for this deposit. The stages must be run in the order of {@link ProcessingStage}; each stage continues where the previous one left off. If a stage fails, the deposit is moved
+     * to the outbox as REJECTED or FAILED.
+     *
+     * Completed stages are recorded in the deposit's {@link DepositJournal}. If the deposit is processed again after a restart, the VALIDATION, CATALOG and ZIP stages that were completed before
+     * are skipped, and so is CONVERSION if the writer stored the metadata in the deposit or the ZIP file was written. A ZIP file that is in place but was not recorded yet is kept, because it is only
+     * moved into place when it is complete.
+     *
+     * @param stage the stage to run
+     * @return true if the deposit can continue to the next stage, false if it failed
+     */
+    public boolean runStage(ProcessingStage stage) {
+        try {
+            switch (stage) {
+                case VALIDATION -> validate();
+                case LOAD -> loadDeposit();
+                case CATALOG -> registerInVaultCatalog();
+                case CONVERSION -> generateMetadata();
+                case ZIP -> writeZip();
+                case FINISH -> finish();
+            }
+            return true;
+        }
+        catch (InvalidDepositException e) {
+            handleFailedDeposit(path, outbox, Deposit.State.REJECTED, e);
+        }
+        catch (Throwable e) {
+            handleFailedDeposit(path, outbox, Deposit.State.FAILED, e);
+        }
+        return false;
+    }
+
+    /**
+     * Like {@link #runStage(ProcessingStage)}, but without waiting for the remote services if asynchronous clients were provided: the VALIDATION and CATALOG stages then complete when
+     * dd-validate-dans-bag or the vault catalog has responded. The other stages are done when this method returns. The permit for the stage is held until the stage completes.
+     *
+     * @param stage the stage to run
+     * @return a future that completes with true if the deposit can continue to the next stage, or false if it failed
+     */
+    public CompletableFuture<Boolean> runStageAsync(ProcessingStage stage) {
+        Supplier<CompletableFuture<Void>> remoteCall = null;
+        IngestStep step = null;
+
+        if (stage == ProcessingStage.VALIDATION && asyncBagValidator != null) {
+            remoteCall = this::validateAsync;
+            step = IngestStep.VALIDATE;
+        }
+        else if (stage == ProcessingStage.CATALOG && asyncVaultCatalogClient != null) {
+            remoteCall = this::createSkeletonRecordInVaultCatalogAsync;
+            step = deposit.isUpdate() ? IngestStep.CATALOG_UPDATE : IngestStep.CATALOG_CREATE;
+        }
+
+        boolean completedBefore;
+
+        try {
+            completedBefore = remoteCall != null && isCompletedBefore(stage);
+        }
+        catch (IOException e) {
+            handleFailedDeposit(path, outbox, Deposit.State.FAILED, e);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        if (remoteCall == null || completedBefore) {
+            return CompletableFuture.completedFuture(runStage(stage));
+        }
+
+        var permit = stageLimits.enter(stage);
+        var timer = metrics.time(step, getDepositId());
+        CompletableFuture<Void> result;
+
         try {
-            var bagDir = getBagDir(path);
+            result = remoteCall.get();
+        }
+        catch (Throwable e) {
+            result = CompletableFuture.failedFuture(e);
+        }
 
-            log.debug("Validating deposit on path {}", bagDir);
+        return result.handle((ignored, e) -> {
+            timer.close();
+            permit.close();
+            var error = e;
+
+            if (error == null) {
+                try {
+                    recordInJournal(stage);
+                    return true;
+                }
+                catch (IOException ioException) {
+                    error = ioException;
+                }
+            }
+
+            var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            handleFailedDeposit(path, outbox, cause instanceof InvalidDepositException ? Deposit.State.REJECTED : Deposit.State.FAILED, cause);
+            return false;
+        });
+    }
+
+    private void validate() throws InvalidDepositException, IOException {
+        log.info("Processing deposit on path {}", path);
+
+        if (isCompletedBefore(ProcessingStage.VALIDATION)) {
+            log.info("Deposit on path {} was validated before; resuming from journal", path);
+            return;
+        }
+
+        var bagDir = getBagDir(path);
+
+        log.debug("Validating deposit on path {}", bagDir);
+        try (var permit = stageLimits.enter(ProcessingStage.VALIDATION); var timer = metrics.time(IngestStep.VALIDATE, getDepositId())) {
             bagValidator.validate(bagDir);
+        }
+        recordInJournal(ProcessingStage.VALIDATION);
+    }
 
-            log.debug("Loading deposit on path {}", path);
-            deposit = depositManager.loadDeposit(path, dataSupplierMap);
-            processDeposit();
+    /**
+     * Opens the journal if that was not done yet, and returns whether the stage was completed in an earlier run.
+     */
+    private boolean isCompletedBefore(ProcessingStage stage) throws IOException {
+        if (journal == null) {
+            journal = DepositJournal.open(path);
+        }
+        return journal.isCompleted(stage);
+    }
 
-            log.debug("Deposit {} processed successfully", deposit.getId());
-            depositManager.saveDepositProperties(deposit);
+    private void recordInJournal(ProcessingStage stage) throws IOException {
+        if (stage == ProcessingStage.CATALOG) {
+            // the later stages and a resumed run need the identifiers that were registered
+            var properties = new LinkedHashMap<String, String>();
+            properties.put("nbn", deposit.getNbn());
+            if (deposit.getObjectVersion() != null) {
+                properties.put("objectVersion", deposit.getObjectVersion().toString());
+            }
+            journal.record(stage, properties);
+        }
+        else {
+            journal.record(stage);
+        }
+    }
 
-            log.debug("Moving deposit to outbox");
-            outbox.moveDeposit(deposit);
+    private CompletableFuture<Void> validateAsync() {
+        log.info("Processing deposit on path {}", path);
+        Path bagDir;
+
+        try {
+            bagDir = getBagDir(path);
         }
         catch (InvalidDepositException e) {
-            handleFailedDeposit(path, outbox, Deposit.State.REJECTED, e);
+            return CompletableFuture.failedFuture(e);
         }
-        catch (Throwable e) {
-            handleFailedDeposit(path, outbox, Deposit.State.FAILED, e);
+
+        log.debug("Validating deposit on path {}", bagDir);
+        return asyncBagValidator.validateAsync(bagDir);
+    }
+
+    private void loadDeposit() {
+        log.debug("Loading deposit on path {}", path);
+        try (var permit = stageLimits.enter(ProcessingStage.LOAD); var timer = metrics.time(IngestStep.LOAD_DEPOSIT, getDepositId())) {
+            deposit = depositManager.loadDeposit(path, dataSupplierMap);
+
+            if (deposit.getPayloadFiles() != null) {
+                timer.setFileCount(deposit.getPayloadFiles().size());
+                metrics.depositLoaded(deposit.getPayloadFiles().size());
+            }
         }
     }
 
-    private void processDeposit() throws InvalidDepositException, IOException {
-        createSkeletonRecordInVaultCatalog();
-        convertToRdaBag();
+    private void registerInVaultCatalog() throws InvalidDepositException, IOException {
+        if (isCompletedBefore(ProcessingStage.CATALOG)) {
+            var properties = journal.getProperties(ProcessingStage.CATALOG);
+            deposit.setNbn(properties.get("nbn"));
+            if (properties.containsKey("objectVersion")) {
+                deposit.setObjectVersion(Integer.parseInt(properties.get("objectVersion")));
+            }
+            log.info("Deposit on path {} was registered in the vault catalog before as {} version {}; resuming from journal", path, deposit.getNbn(), deposit.getObjectVersion());
+            return;
+        }
+
+        try (var permit = stageLimits.enter(ProcessingStage.CATALOG)) {
+            createSkeletonRecordInVaultCatalog();
+        }
+        recordInJournal(ProcessingStage.CATALOG);
+    }
+
+    private void finish() throws IOException {
+        try (var permit = stageLimits.enter(ProcessingStage.FINISH)) {
+            log.debug("Deposit {} processed successfully", deposit.getId());
+            depositManager.saveDepositProperties(deposit);
+
+            // the deposit is done, so it must not be resumed if it is ever put in the inbox again
+            journal.delete();
+
+            log.debug("Moving deposit to outbox");
+            try (var timer = metrics.time(IngestStep.OUTBOX_MOVE, getDepositId())) {
+                outbox.moveDeposit(deposit);
+            }
+        }
+        metrics.depositAccepted();
+        completion.complete(null);
     }
 
     private void createSkeletonRecordInVaultCatalog() throws IOException, InvalidDepositException {
         if (deposit.isUpdate()) {
-            var dataset = vaultCatalogClient.findDataset(convertToSwordToken(deposit.getIsVersionOf()))
-                .orElseThrow(() -> new InvalidDepositException(String.format("Dataset with sword token %s not found in vault catalog", deposit.getSwordToken())));
-            checkDataSupplier(dataset);
-            checkCreatedTimestamp(dataset);
-            deposit.setNbn(dataset.getNbn());
-            deposit.setObjectVersion(getNextOcflVersionNumber(dataset));
-            vaultCatalogClient.addDatasetVersionFor(deposit);
+            try (var timer = metrics.time(IngestStep.CATALOG_UPDATE, getDepositId())) {
+                Optional<DatasetDto> dataset;
+                try (var scope = RemoteCallContext.forDeposit(getDepositId())) {
+                    dataset = vaultCatalogClient.findDataset(convertToSwordToken(deposit.getIsVersionOf()));
+                }
+                prepareNewVersion(dataset);
+                vaultCatalogClient.addDatasetVersionFor(deposit);
+            }
+        }
+        else {
+            deposit.setNbn(idMinter.mintUrnNbn());
+            try (var timer = metrics.time(IngestStep.CATALOG_CREATE, getDepositId())) {
+                vaultCatalogClient.createDatasetFor(deposit);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> createSkeletonRecordInVaultCatalogAsync() {
+        if (deposit.isUpdate()) {
+            CompletableFuture<Optional<DatasetDto>> dataset;
+            try (var scope = RemoteCallContext.forDeposit(getDepositId())) {
+                dataset = asyncVaultCatalogClient.findDatasetAsync(convertToSwordToken(deposit.getIsVersionOf()));
+            }
+            return dataset
+                .thenCompose(dataset -> {
+                    try {
+                        prepareNewVersion(dataset);
+                    }
+                    catch (InvalidDepositException e) {
+                        throw new CompletionException(e);
+                    }
+                    return asyncVaultCatalogClient.addDatasetVersionForAsync(deposit);
+                })
+                .thenApply(versionExport -> null);
         }
         else {
             deposit.setNbn(idMinter.mintUrnNbn());
-            vaultCatalogClient.createDatasetFor(deposit);
+            return asyncVaultCatalogClient.createDatasetForAsync(deposit).thenApply(dataset -> null);
         }
     }
 
+    private void prepareNewVersion(Optional<DatasetDto> optionalDataset) throws InvalidDepositException {
+        var dataset = optionalDataset
+            .orElseThrow(() -> new InvalidDepositException(String.format("Dataset with sword token %s not found in vault catalog", deposit.getSwordToken())));
+        checkDataSupplier(dataset);
+        checkCreatedTimestamp(dataset);
+        deposit.setNbn(dataset.getNbn());
+        deposit.setObjectVersion(getNextOcflVersionNumber(dataset));
+    }
+
     private String convertToSwordToken(String isVersionOf) {
         if (isVersionOf.startsWith("sword:")) {
             return isVersionOf;
@@ -153,14 +398,66 @@ public class ConvertToRdaBagTask implements Runnable {
     }
 
 
-    private void convertToRdaBag() throws IOException {
-        try {
-            rdaBagWriterFactory.createRdaBagWriter(deposit).write(dveOutbox.resolve(outputFilename(deposit.getBagId(), deposit.getObjectVersion())));
+    private void generateMetadata() throws IOException {
+        if (isCompletedBefore(ProcessingStage.ZIP)) {
+            log.info("ZIP file for deposit on path {} was written before; no need to generate the metadata again", path);
+            return;
+        }
+
+        try (var permit = stageLimits.enter(ProcessingStage.CONVERSION)) {
+            rdaBagWriter = rdaBagWriterFactory.createRdaBagWriter(deposit);
+
+            if (isCompletedBefore(ProcessingStage.CONVERSION) && rdaBagWriter.isMetadataStoredInDeposit()) {
+                log.info("Metadata for deposit on path {} was generated before; resuming from journal", path);
+                return;
+            }
+
+            rdaBagWriter.generateMetadata();
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
+        }
+        recordInJournal(ProcessingStage.CONVERSION);
+    }
+
+    private void writeZip() throws IOException {
+        var rdaBag = dveOutbox.resolve(outputFilename(deposit.getBagId(), deposit.getObjectVersion()));
+
+        // the ZIP file may already have been taken from the outbox, so it must not be written again even if it is gone
+        if (isCompletedBefore(ProcessingStage.ZIP)) {
+            log.info("ZIP file {} was written before; resuming from journal", rdaBag);
+            deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
+            return;
+        }
+
+        if (journal.isResumed()) {
+            // the earlier run stopped between moving the ZIP file into place and recording that in the journal; the file is complete and may already be in use
+            if (Files.exists(rdaBag)) {
+                log.info("ZIP file {} was written before, but not recorded in the journal; keeping it", rdaBag);
+                deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
+                recordInJournal(ProcessingStage.ZIP);
+                return;
+            }
+        }
+
+        // left by an earlier run that stopped while writing the ZIP file
+        if (Files.deleteIfExists(RdaBagWriter.getTempZipFile(rdaBag))) {
+            log.info("Deleted incomplete ZIP file for {}", rdaBag);
+        }
+
+        try (var permit = stageLimits.enter(ProcessingStage.ZIP)) {
+            try (var timer = metrics.time(IngestStep.ZIP, getDepositId())) {
+                rdaBagWriter.writeZip(rdaBag);
+                var bytes = Files.size(rdaBag);
+                timer.setBytes(bytes);
+                metrics.zipWritten(bytes);
+            }
             deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
         }
         catch (Exception e) {
             throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
         }
+        recordInJournal(ProcessingStage.ZIP);
     }
 
     private String outputFilename(String bagId, Integer objectVersion) {
@@ -176,6 +473,24 @@ public class ConvertToRdaBagTask implements Runnable {
     private void handleFailedDeposit(Path path, Outbox outbox, Deposit.State state, Throwable error) {
         log.error("Deposit on path {} failed with state {}", path, state, error);
 
+        if (state == Deposit.State.REJECTED) {
+            metrics.depositRejected();
+        }
+        else {
+            metrics.depositFailed();
+        }
+
+        // A rejected deposit must be corrected and then processed from the start. A failed deposit keeps its journal, so that if it is put back in the inbox it is not registered in the vault
+        // catalog a second time.
+        if (state == Deposit.State.REJECTED && journal != null) {
+            try {
+                journal.delete();
+            }
+            catch (IOException e) {
+                log.warn("Could not delete journal of deposit {}", path, e);
+            }
+        }
+
         try {
             depositManager.updateDepositState(path, state, error.getMessage());
             log.info("Moving deposit {} to outbox: {}", path, state);
@@ -192,6 +507,12 @@ public class ConvertToRdaBagTask implements Runnable {
                 log.error("Failed to move deposit to outbox, nothing left to do", ioException);
             }
         }
+        completion.complete(null);
+    }
+
+    // the id of a deposit is the name of its directory, which is also known before the deposit is loaded
+    private String getDepositId() {
+        return path.getFileName().toString();
     }
 
     private Path getBagDir(Path path) throws InvalidDepositException {
@@ -16,6 +16,8 @@
 package nl.knaw.dans.vaultingest.core;
 
 import lombok.AllArgsConstructor;
+import nl.knaw.dans.vaultingest.client.AsyncBagValidator;
+import nl.knaw.dans.vaultingest.client.AsyncVaultCatalogClient;
 import nl.knaw.dans.vaultingest.client.BagValidator;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
@@ -35,8 +37,14 @@ public class ConvertToRdaBagTaskFactory {
     private final IdMinter idMinter;
     private final DepositManager depositManager;
     private final Path dveOutbox;
+    private final StageLimits stageLimits;
+    private final IngestMetrics metrics;
+    // optional, see ConvertToRdaBagTask.runStageAsync
+    private final AsyncBagValidator asyncBagValidator;
+    private final AsyncVaultCatalogClient asyncVaultCatalogClient;
 
     public ConvertToRdaBagTask create(Path path, Outbox outbox) {
-        return new ConvertToRdaBagTask(path, outbox, dataSupplierMap, rdaBagWriterFactory, vaultCatalogClient, bagValidator, idMinter, depositManager, dveOutbox);
+        return new ConvertToRdaBagTask(path, outbox, dataSupplierMap, rdaBagWriterFactory, vaultCatalogClient, bagValidator, idMinter, depositManager, dveOutbox, stageLimits, metrics,
+            asyncBagValidator, asyncVaultCatalogClient);
     }
 }
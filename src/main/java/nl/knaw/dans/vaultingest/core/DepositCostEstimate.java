@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.Value;
+
+/**
+ * The estimated size of a deposit, used to schedule small deposits before large ones.
+ */
+@Value
+public class DepositCostEstimate {
+    public static final DepositCostEstimate UNKNOWN = new DepositCostEstimate(0, 0);
+
+    /**
+     * The total size of the payload files in bytes.
+     */
+    long payloadBytes;
+    /**
+     * The number of payload files.
+     */
+    long fileCount;
+
+    /**
+     * Returns the cost of processing the deposit, expressed in bytes: the payload size plus a fixed overhead per file for the work that does not depend on the file size (files.xml entries,
+     * manifest lines, ZIP entries, metadata).
+     *
+     * @param perFileCost the overhead per file in bytes
+     * @return the cost
+     */
+    public long getCost(long perFileCost) {
+        return payloadBytes + fileCount * perFileCost;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Estimates the size of a deposit without loading it. The Payload-Oxum in bag-info.txt gives the payload size and file count directly. If it is missing, the file count is taken from the number of
+ * lines in a payload manifest and the size from the files in the data directory.
+ *
+ * It also determines, equally cheaply, which dataset a deposit belongs to, so that the {@link DepositScheduler} can keep the versions of a dataset in order.
+ */
+@Slf4j
+public class DepositCostEstimator {
+
+    public DepositCostEstimate estimate(Path depositDir) {
+        try {
+            var bagDir = getBagDir(depositDir);
+
+            if (bagDir.isEmpty()) {
+                return DepositCostEstimate.UNKNOWN;
+            }
+
+            var fromOxum = readPayloadOxum(bagDir.get());
+
+            if (fromOxum.isPresent()) {
+                return fromOxum.get();
+            }
+
+            return new DepositCostEstimate(sumPayloadSizes(bagDir.get()), countManifestLines(bagDir.get()));
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Could not estimate the size of deposit {}", depositDir, e);
+            return DepositCostEstimate.UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the SWORD token of the dataset the deposit belongs to: the Is-Version-Of in bag-info.txt for an update, otherwise the dataverse.sword-token in deposit.properties. Both forms of the
+     * token ("sword:" and "urn:uuid:") are returned as "sword:", so that the first version and its updates get the same token.
+     *
+     * @param depositDir the deposit directory
+     * @return the token, or empty if it could not be determined
+     */
+    public Optional<String> getDatasetSwordToken(Path depositDir) {
+        try {
+            var bagDir = getBagDir(depositDir);
+
+            if (bagDir.isPresent()) {
+                var isVersionOf = readBagInfoValue(bagDir.get(), "Is-Version-Of");
+
+                if (isVersionOf.isPresent()) {
+                    return isVersionOf.map(DepositCostEstimator::normalizeSwordToken);
+                }
+            }
+
+            var propertiesFile = depositDir.resolve("deposit.properties");
+
+            if (!Files.exists(propertiesFile)) {
+                return Optional.empty();
+            }
+
+            try (var reader = Files.newBufferedReader(propertiesFile, StandardCharsets.UTF_8)) {
+                var properties = new Properties();
+                properties.load(reader);
+                return Optional.ofNullable(properties.getProperty("dataverse.sword-token"))
+                    .filter(token -> !token.isBlank())
+                    .map(DepositCostEstimator::normalizeSwordToken);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Could not determine the dataset of deposit {}", depositDir, e);
+            return Optional.empty();
+        }
+    }
+
+    private static String normalizeSwordToken(String token) {
+        token = token.trim();
+        return token.startsWith("urn:uuid:") ? "sword:" + token.substring("urn:uuid:".length()) : token;
+    }
+
+    private Optional<String> readBagInfoValue(Path bagDir, String label) throws IOException {
+        var bagInfo = bagDir.resolve("bag-info.txt");
+
+        if (!Files.exists(bagInfo)) {
+            return Optional.empty();
+        }
+
+        try (var lines = Files.lines(bagInfo, StandardCharsets.UTF_8)) {
+            return lines
+                .filter(line -> line.regionMatches(true, 0, label + ":", 0, label.length() + 1))
+                .findFirst()
+                .map(line -> line.substring(label.length() + 1).trim())
+                .filter(value -> !value.isEmpty());
+        }
+    }
+
+    private Optional<Path> getBagDir(Path depositDir) throws IOException {
+        try (var files = Files.list(depositDir)) {
+            return files.filter(Files::isDirectory).findFirst();
+        }
+    }
+
+    Optional<DepositCostEstimate> readPayloadOxum(Path bagDir) throws IOException {
+        return readBagInfoValue(bagDir, "Payload-Oxum").flatMap(DepositCostEstimator::parsePayloadOxum);
+    }
+
+    private static Optional<DepositCostEstimate> parsePayloadOxum(String value) {
+        // octetstream sum "." stream count
+        var parts = value.split("\\.");
+
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(new DepositCostEstimate(Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+        }
+        catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private long sumPayloadSizes(Path bagDir) throws IOException {
+        var dataDir = bagDir.resolve("data");
+
+        if (!Files.isDirectory(dataDir)) {
+            return 0;
+        }
+
+        try (var files = Files.walk(dataDir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                }
+                catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        }
+    }
+
+    private long countManifestLines(Path bagDir) throws IOException {
+        try (var files = Files.list(bagDir)) {
+            var manifest = files.filter(file -> file.getFileName().toString().startsWith("manifest-")).findFirst();
+
+            if (manifest.isEmpty()) {
+                return 0;
+            }
+
+            try (var lines = Files.lines(manifest.get(), StandardCharsets.UTF_8)) {
+                return lines.filter(line -> !line.isBlank()).count();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-ahead journal of the stages that were completed for a deposit, so that after a crash or restart the deposit resumes where it left off instead of being validated, registered in the vault
+ * catalog and converted again. The journal is a text file in the deposit directory with one line per completed stage, optionally followed by properties that the later stages need, for example:
+ *
+ * <pre>
+ * VALIDATION
+ * CATALOG nbn=urn:nbn:nl:ui:13-abc objectVersion=2
+ * </pre>
+ *
+ * Each line is forced to disk before {@link #record(ProcessingStage, Map)} returns. A line that was only partly written when the JVM died is ignored, so that stage is simply run again.
+ */
+@Slf4j
+public class DepositJournal {
+    public static final String FILENAME = "vault-ingest-journal.txt";
+
+    private final Path file;
+    private final Map<ProcessingStage, Map<String, String>> completed = new EnumMap<>(ProcessingStage.class);
+    private final boolean resumed;
+
+    private DepositJournal(Path file) throws IOException {
+        this.file = file;
+
+        if (Files.exists(file)) {
+            var content = Files.readString(file, StandardCharsets.UTF_8);
+            // only complete lines count; the last one may have been cut off by a crash
+            var end = content.lastIndexOf('\n');
+
+            if (end >= 0) {
+                for (var line : content.substring(0, end).split("\n")) {
+                    parse(line);
+                }
+            }
+        }
+
+        this.resumed = !completed.isEmpty();
+    }
+
+    /**
+     * Opens the journal of the deposit, reading the stages that were completed before.
+     *
+     * @param depositDir the deposit directory
+     * @return the journal
+     * @throws IOException if the existing journal could not be read
+     */
+    public static DepositJournal open(Path depositDir) throws IOException {
+        return new DepositJournal(depositDir.resolve(FILENAME));
+    }
+
+    /**
+     * @return true if stages were completed before this journal was opened
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public boolean isCompleted(ProcessingStage stage) {
+        return completed.containsKey(stage);
+    }
+
+    /**
+     * Returns the properties recorded with the stage.
+     *
+     * @param stage the stage
+     * @return the properties, or an empty map if the stage was not completed or has no properties
+     */
+    public Map<String, String> getProperties(ProcessingStage stage) {
+        return completed.getOrDefault(stage, Map.of());
+    }
+
+    public void record(ProcessingStage stage) throws IOException {
+        record(stage, Map.of());
+    }
+
+    /**
+     * Records that the stage was completed, and forces the record to disk.
+     *
+     * @param stage      the stage
+     * @param properties properties for the later stages; keys and values must not contain whitespace or '='
+     * @throws IOException if the record could not be written
+     */
+    public void record(ProcessingStage stage, Map<String, String> properties) throws IOException {
+        var line = new StringBuilder(stage.name());
+
+        for (var entry : properties.entrySet()) {
+            if (!isValidToken(entry.getKey()) || !isValidToken(entry.getValue())) {
+                throw new IllegalArgumentException(String.format("Invalid journal property %s=%s", entry.getKey(), entry.getValue()));
+            }
+            line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        line.append('\n');
+
+        var created = !Files.exists(file);
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        if (created) {
+            forceDirectory(file.getParent());
+        }
+
+        completed.put(stage, Collections.unmodifiableMap(new LinkedHashMap<>(properties)));
+        log.debug("Recorded stage {} in journal {}", stage, file);
+    }
+
+    /**
+     * Deletes the journal. After this, the deposit would be processed from the start.
+     *
+     * @throws IOException if the journal could not be deleted
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+        completed.clear();
+    }
+
+    private void parse(String line) {
+        var tokens = line.trim().split("\\s+");
+
+        try {
+            var stage = ProcessingStage.valueOf(tokens[0]);
+            var properties = new LinkedHashMap<String, String>();
+
+            for (int i = 1; i < tokens.length; i++) {
+                var separator = tokens[i].indexOf('=');
+
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Property without '=': " + tokens[i]);
+                }
+                properties.put(tokens[i].substring(0, separator), tokens[i].substring(separator + 1));
+            }
+
+            completed.put(stage, Collections.unmodifiableMap(properties));
+        }
+        catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid line '{}' in journal {}", line, file, e);
+        }
+    }
+
+    private static boolean isValidToken(String token) {
+        return token != null && !token.isEmpty() && token.chars().noneMatch(c -> Character.isWhitespace(c) || c == '=');
+    }
+
+    // makes the new directory entry durable; not all platforms allow opening a directory, in which case this is skipped
+    private static void forceDirectory(Path directory) {
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            log.trace("Could not force directory {} to disk", directory, e);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs deposits through the {@link ProcessingStage}s as a pipeline. Each stage has its own worker threads and a bounded queue of deposits waiting for it, so that different deposits can be in
+ * different stages at the same time: while one deposit is being zipped, the next can be converted and a third validated. When the queue of a stage is full, the previous stage waits; when the queue
+ * of the first stage is full, {@link #execute(Runnable)} blocks.
+ *
+ * A stage that waits for a remote service does not keep its worker busy if the task was given asynchronous clients: the worker takes the next deposit, and the deposit is handed over to the next
+ * stage when the response arrives. The number of such deposits is limited by the {@link StageLimits} of the stage.
+ */
+@Slf4j
+public class DepositPipeline implements Executor, Managed {
+    private final Map<ProcessingStage, Stage> stages = new EnumMap<>(ProcessingStage.class);
+
+    private static class Stage {
+        private final ProcessingStage processingStage;
+        private final BlockingQueue<ConvertToRdaBagTask> queue;
+        private final int workers;
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final List<Thread> threads = new ArrayList<>();
+        private Stage next;
+
+        private Stage(ProcessingStage processingStage, int queueCapacity, int workers) {
+            this.processingStage = processingStage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.workers = workers;
+        }
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param workers       the number of worker threads per stage; stages that are not in the map get one worker
+     * @param queueCapacity the maximum number of deposits waiting for each stage
+     */
+    public DepositPipeline(Map<ProcessingStage, Integer> workers, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+
+        Stage previous = null;
+        for (var processingStage : ProcessingStage.values()) {
+            var workerCount = workers.getOrDefault(processingStage, 1);
+
+            if (workerCount < 1) {
+                throw new IllegalArgumentException(String.format("Number of workers for stage %s must be at least 1", processingStage));
+            }
+
+            var stage = new Stage(processingStage, queueCapacity, workerCount);
+            stages.put(processingStage, stage);
+
+            if (previous != null) {
+                previous.next = stage;
+            }
+            previous = stage;
+        }
+    }
+
+    /**
+     * Adds a deposit to the pipeline, blocking while the queue of the first stage is full.
+     *
+     * @param task the {@link ConvertToRdaBagTask} for the deposit
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (!(task instanceof ConvertToRdaBagTask)) {
+            throw new IllegalArgumentException("Only ConvertToRdaBagTask can be run in the deposit pipeline, not " + task.getClass().getName());
+        }
+
+        try {
+            stages.get(ProcessingStage.values()[0]).queue.put((ConvertToRdaBagTask) task);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while adding deposit to the pipeline: " + ((ConvertToRdaBagTask) task).getPath(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        for (var stage : stages.values()) {
+            log.info("Starting {} worker(s) for pipeline stage {}", stage.workers, stage.processingStage);
+
+            for (int i = 0; i < stage.workers; i++) {
+                var thread = new Thread(() -> work(stage), String.format("pipeline-%s-%d", stage.processingStage.name().toLowerCase(), i));
+                thread.setDaemon(true);
+                stage.threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        log.info("Stopping deposit pipeline");
+
+        for (var stage : stages.values()) {
+            stage.threads.forEach(Thread::interrupt);
+        }
+
+        for (var stage : stages.values()) {
+            for (var thread : stage.threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+            stage.threads.clear();
+        }
+    }
+
+    /**
+     * Returns the number of deposits waiting for the stage. A stage whose queue keeps growing is the bottleneck of the pipeline.
+     *
+     * @param stage the stage
+     * @return the number of waiting deposits
+     */
+    public int getQueueDepth(ProcessingStage stage) {
+        return stages.get(stage).queue.size();
+    }
+
+    /**
+     * Returns the number of deposits that are being processed in the stage.
+     *
+     * @param stage the stage
+     * @return the number of busy workers
+     */
+    public int getActiveWorkers(ProcessingStage stage) {
+        return stages.get(stage).activeWorkers.get();
+    }
+
+    /**
+     * Returns the number of deposits in the stage that are waiting for a remote service. These do not occupy a worker; see {@link ConvertToRdaBagTask#runStageAsync(ProcessingStage)}.
+     *
+     * @param stage the stage
+     * @return the number of deposits waiting for a response
+     */
+    public int getInFlight(ProcessingStage stage) {
+        return stages.get(stage).inFlight.get();
+    }
+
+    private void work(Stage stage) {
+        while (!Thread.currentThread().isInterrupted()) {
+            ConvertToRdaBagTask task;
+
+            try {
+                task = stage.queue.take();
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+
+            stage.activeWorkers.incrementAndGet();
+            try {
+                var result = task.runStageAsync(stage.processingStage);
+
+                if (result.isDone()) {
+                    // the common case: hand over on the worker thread, so that a full queue of the next stage slows down this stage
+                    if (result.join() && stage.next != null) {
+                        stage.next.queue.put(task);
+                    }
+                }
+                else {
+                    stage.inFlight.incrementAndGet();
+                    result.thenAccept(success -> {
+                        stage.inFlight.decrementAndGet();
+                        if (success && stage.next != null) {
+                            handOver(task, stage.next);
+                        }
+                    });
+                }
+            }
+            catch (InterruptedException e) {
+                log.warn("Interrupted while handing over deposit {} to stage {}; it will be processed again after a restart", task.getPath(), stage.next.processingStage);
+                break;
+            }
+            finally {
+                stage.activeWorkers.decrementAndGet();
+            }
+        }
+
+        log.debug("Worker for pipeline stage {} stopped", stage.processingStage);
+    }
+
+    private void handOver(ConvertToRdaBagTask task, Stage next) {
+        try {
+            next.queue.put(task);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while handing over deposit {} to stage {}; it will be processed again after a restart", task.getPath(), next.processingStage);
+        }
+    }
+}
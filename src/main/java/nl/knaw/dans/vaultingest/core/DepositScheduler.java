@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands deposits over to the task queue in order of their estimated size, smallest first, so that one very large deposit does not hold up all the small deposits behind it. At most maxInFlight
+ * deposits are handed over at a time; the others wait here, where they can still be reordered.
+ *
+ * To prevent a large deposit from waiting forever while smaller ones keep arriving, a deposit's priority improves the longer it waits: every second of waiting counts as agingRate bytes less. In
+ * effect a deposit is scheduled at its arrival time plus its cost divided by the aging rate, which is why the order can be kept in an ordinary priority queue.
+ *
+ * With a {@link FairSharePolicy}, each depositor has its own queue, ordered as described above. The next deposit is taken from the queue of the depositor that has received the least service so
+ * far: the cost of its deposits that were handed over, divided by its weight (weighted fair queueing). A depositor that becomes active again starts at the level of the depositors that are busy, so
+ * that being idle does not build up credit. Depositors that have reached their maximum number of deposits in processing are skipped.
+ *
+ * Deposits of the same dataset are never reordered: a new version must be processed after the version before it, or it would get the wrong OCFL object version number, and the earlier version
+ * would then be rejected. Only the oldest waiting deposit of a dataset competes with the other deposits; the next one is queued when it has finished.
+ */
+@Slf4j
+public class DepositScheduler implements Executor, Managed {
+    private final Executor delegate;
+    private final DepositCostEstimator estimator;
+    private final int maxInFlight;
+    private final long perFileCost;
+    private final long agingRate;
+    private final FairSharePolicy fairSharePolicy;
+    private final MetricRegistry metrics;
+    private final LongSupplier nanoTime;
+    private final long startNanos;
+
+    private final Semaphore slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong queuedCost = new AtomicLong();
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private final Map<String, Share> shares = new HashMap<>();
+    // the deposits waiting for an earlier deposit of the same dataset, per dataset; a dataset is present while one of its deposits is queued or in processing
+    private final Map<String, Deque<Entry>> datasets = new HashMap<>();
+    private int queuedDeposits;
+
+    private Thread dispatcher;
+
+    private static class Entry implements Comparable<Entry> {
+        private final Runnable task;
+        private final Path path;
+        private final String shareId;
+        // the SWORD token of the dataset, or null if unknown
+        private final String dataset;
+        private final long cost;
+        private final double key;
+        private final long sequence;
+
+        private Entry(Runnable task, Path path, String shareId, String dataset, long cost, double key, long sequence) {
+            this.task = task;
+            this.path = path;
+            this.shareId = shareId;
+            this.dataset = dataset;
+            this.cost = cost;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            var result = Double.compare(key, other.key);
+            // deposits with the same key are handed over in the order in which they arrived
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Share {
+        private final String id;
+        private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+        private final Meter completed = new Meter();
+        private final Meter completedBytes = new Meter();
+        private int inFlight;
+        // deposits waiting for an earlier deposit of the same dataset
+        private int waiting;
+        // the cost handed over so far divided by the weight
+        private double served;
+
+        private Share(String id) {
+            this.id = id;
+        }
+
+        private boolean isBusy() {
+            return !queue.isEmpty() || inFlight > 0 || waiting > 0;
+        }
+    }
+
+    /**
+     * Creates a scheduler that orders all deposits by size only.
+     *
+     * @param delegate    the task queue to hand the deposits over to
+     * @param estimator   the estimator of the deposit sizes
+     * @param maxInFlight the maximum number of deposits handed over and not yet finished
+     * @param perFileCost the cost of a file on top of its size, in bytes
+     * @param agingRate   the number of bytes by which the cost of a waiting deposit decreases per second; 0 for no aging
+     */
+    public DepositScheduler(Executor delegate, DepositCostEstimator estimator, int maxInFlight, long perFileCost, long agingRate) {
+        this(delegate, estimator, maxInFlight, perFileCost, agingRate, FairSharePolicy.NONE, null);
+    }
+
+    /**
+     * Creates a scheduler that divides the capacity over the depositors.
+     *
+     * @param fairSharePolicy the division over the depositors
+     * @param metrics         the registry for the metrics per depositor, or null for none
+     */
+    public DepositScheduler(Executor delegate, DepositCostEstimator estimator, int maxInFlight, long perFileCost, long agingRate, FairSharePolicy fairSharePolicy, MetricRegistry metrics) {
+        this(delegate, estimator, maxInFlight, perFileCost, agingRate, fairSharePolicy, metrics, System::nanoTime);
+    }
+
+    DepositScheduler(Executor delegate, DepositCostEstimator estimator, int maxInFlight, long perFileCost, long agingRate, LongSupplier nanoTime) {
+        this(delegate, estimator, maxInFlight, perFileCost, agingRate, FairSharePolicy.NONE, null, nanoTime);
+    }
+
+    DepositScheduler(Executor delegate, DepositCostEstimator estimator, int maxInFlight, long perFileCost, long agingRate, FairSharePolicy fairSharePolicy, MetricRegistry metrics,
+        LongSupplier nanoTime) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.delegate = delegate;
+        this.estimator = estimator;
+        this.maxInFlight = maxInFlight;
+        this.perFileCost = perFileCost;
+        this.agingRate = agingRate;
+        this.fairSharePolicy = fairSharePolicy;
+        this.metrics = metrics;
+        this.nanoTime = nanoTime;
+        this.startNanos = nanoTime.getAsLong();
+        this.slots = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        var path = task instanceof ConvertToRdaBagTask ? ((ConvertToRdaBagTask) task).getPath() : null;
+        var estimate = path == null ? DepositCostEstimate.UNKNOWN : estimator.estimate(path);
+        var cost = estimate.getCost(perFileCost);
+        var shareId = fairSharePolicy.getShare(path);
+        var dataset = path == null ? null : estimator.getDatasetSwordToken(path).orElse(null);
+
+        log.info("Scheduling deposit {}{}: estimated {} bytes in {} files", path, shareId.isEmpty() ? "" : " of " + shareId, estimate.getPayloadBytes(), estimate.getFileCount());
+        queuedCost.addAndGet(cost);
+        var entry = new Entry(task, path, shareId, dataset, cost, key(cost), sequence.getAndIncrement());
+
+        synchronized (lock) {
+            var share = getShare(shareId);
+
+            if (!share.isBusy()) {
+                // no credit for the time the depositor was idle
+                shares.values().stream()
+                    .filter(Share::isBusy)
+                    .mapToDouble(s -> s.served)
+                    .min()
+                    .ifPresent(level -> share.served = Math.max(share.served, level));
+            }
+
+            queuedDeposits++;
+
+            if (dataset != null && datasets.containsKey(dataset)) {
+                log.debug("Deposit {} waits for an earlier deposit of dataset {}", path, dataset);
+                datasets.get(dataset).add(entry);
+                share.waiting++;
+                return;
+            }
+
+            if (dataset != null) {
+                datasets.put(dataset, new ArrayDeque<>());
+            }
+
+            share.queue.add(entry);
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void start() {
+        dispatcher = new Thread(this::dispatch, "deposit-scheduler");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * @return the number of deposits waiting to be handed over
+     */
+    public int getQueuedDeposits() {
+        synchronized (lock) {
+            return queuedDeposits;
+        }
+    }
+
+    /**
+     * Returns the total estimated cost of the waiting deposits, in bytes. Divided by the observed throughput, this gives an estimate of the time needed to finish the current batch.
+     *
+     * @return the total cost
+     */
+    public long getQueuedCost() {
+        return queuedCost.get();
+    }
+
+    /**
+     * @return the number of deposits that were handed over and have not finished yet
+     */
+    public int getInFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    /**
+     * @param depositorId the depositor
+     * @return the number of deposits of the depositor waiting to be handed over
+     */
+    public int getQueuedDeposits(String depositorId) {
+        synchronized (lock) {
+            var share = shares.get(depositorId);
+            return share == null ? 0 : share.queue.size() + share.waiting;
+        }
+    }
+
+    /**
+     * @param depositorId the depositor
+     * @return the number of deposits of the depositor that were handed over and have not finished yet
+     */
+    public int getInFlight(String depositorId) {
+        synchronized (lock) {
+            var share = shares.get(depositorId);
+            return share == null ? 0 : share.inFlight;
+        }
+    }
+
+    private double key(long cost) {
+        if (agingRate <= 0) {
+            return cost;
+        }
+        var arrivalSeconds = (nanoTime.getAsLong() - startNanos) / 1e9;
+        return arrivalSeconds + (double) cost / agingRate;
+    }
+
+    // must be called with lock held
+    private Share getShare(String id) {
+        return shares.computeIfAbsent(id, key -> {
+            var share = new Share(key);
+
+            if (metrics != null && fairSharePolicy.isEnabled()) {
+                metrics.register(MetricRegistry.name(DepositScheduler.class, "depositor", key, "queued-deposits"), (Gauge<Integer>) () -> getQueuedDeposits(key));
+                metrics.register(MetricRegistry.name(DepositScheduler.class, "depositor", key, "in-flight"), (Gauge<Integer>) () -> getInFlight(key));
+                metrics.register(MetricRegistry.name(DepositScheduler.class, "depositor", key, "completed"), share.completed);
+                metrics.register(MetricRegistry.name(DepositScheduler.class, "depositor", key, "completed-bytes"), share.completedBytes);
+            }
+
+            return share;
+        });
+    }
+
+    /**
+     * Takes the next deposit, waiting until there is one that may be handed over.
+     */
+    private Map.Entry<Share, Entry> takeNext() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                Share next = null;
+
+                for (var share : shares.values()) {
+                    if (share.queue.isEmpty() || fairSharePolicy.isAtMaxInFlight(share.id, share.inFlight)) {
+                        continue;
+                    }
+                    if (next == null || share.served < next.served) {
+                        next = share;
+                    }
+                }
+
+                if (next != null) {
+                    var entry = next.queue.poll();
+                    next.inFlight++;
+                    // a deposit of unknown size still counts as one file, so that it does not come for free
+                    next.served += (double) Math.max(entry.cost, Math.max(perFileCost, 1)) / fairSharePolicy.getWeight(next.id);
+                    queuedDeposits--;
+                    return Map.entry(next, entry);
+                }
+
+                lock.wait();
+            }
+        }
+    }
+
+    private void finished(Share share, Entry entry, boolean completed) {
+        synchronized (lock) {
+            share.inFlight--;
+            if (completed) {
+                share.completed.mark();
+                share.completedBytes.mark(entry.cost);
+            }
+            if (entry.dataset != null) {
+                releaseNextOfDataset(entry.dataset);
+            }
+            // a depositor that was at its maximum may be eligible again
+            lock.notifyAll();
+        }
+        slots.release();
+    }
+
+    // must be called with lock held
+    private void releaseNextOfDataset(String dataset) {
+        var waiting = datasets.get(dataset);
+        var next = waiting == null ? null : waiting.poll();
+
+        if (next == null) {
+            datasets.remove(dataset);
+            return;
+        }
+
+        // it keeps the key it got on arrival, so the time it waited counts for its aging
+        var share = getShare(next.shareId);
+        share.waiting--;
+        share.queue.add(next);
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Map.Entry<Share, Entry> next;
+
+            try {
+                // wait for a free slot first, so that the deposit is chosen as late as possible
+                slots.acquire();
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+
+            try {
+                next = takeNext();
+            }
+            catch (InterruptedException e) {
+                slots.release();
+                break;
+            }
+
+            var share = next.getKey();
+            var entry = next.getValue();
+            queuedCost.addAndGet(-entry.cost);
+            log.debug("Handing over deposit {} (cost {})", entry.path, entry.cost);
+
+            try {
+                if (entry.task instanceof ConvertToRdaBagTask) {
+                    ((ConvertToRdaBagTask) entry.task).getCompletion().whenComplete((result, error) -> finished(share, entry, true));
+                    delegate.execute(entry.task);
+                }
+                else {
+                    delegate.execute(() -> {
+                        try {
+                            entry.task.run();
+                        }
+                        finally {
+                            finished(share, entry, true);
+                        }
+                    });
+                }
+            }
+            catch (RuntimeException e) {
+                // the deposit was not accepted, so it will not complete either
+                log.error("Could not hand over deposit {}", entry.path, e);
+                finished(share, entry, false);
+            }
+        }
+
+        log.debug("Deposit scheduler stopped");
+    }
+}
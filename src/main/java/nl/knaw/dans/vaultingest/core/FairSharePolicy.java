@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Divides the processing capacity of the {@link DepositScheduler} over the depositors, so that one depositor submitting thousands of deposits cannot keep the others waiting for days. Each
+ * depositor (the depositor.userId in deposit.properties) gets a share in proportion to its weight, and can optionally be limited to a maximum number of deposits in processing at the same time.
+ */
+@Slf4j
+public class FairSharePolicy {
+    /**
+     * The share of deposits whose depositor could not be determined.
+     */
+    public static final String UNKNOWN_DEPOSITOR = "unknown";
+
+    /**
+     * A policy that puts all deposits in a single share, so that the scheduler only orders them by size.
+     */
+    public static final FairSharePolicy NONE = new FairSharePolicy(false, 1, Map.of(), Map.of());
+
+    private static final String DEPOSITOR_ID = "depositor.userId";
+
+    private final boolean enabled;
+    private final int defaultWeight;
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> maxInFlight;
+
+    /**
+     * Creates a policy.
+     *
+     * @param enabled       whether to divide the capacity over the depositors at all
+     * @param defaultWeight the weight of depositors that are not in weights
+     * @param weights       the weights per depositor id
+     * @param maxInFlight   the maximum number of deposits in processing per depositor id; depositors that are not in the map are not limited
+     */
+    public FairSharePolicy(boolean enabled, int defaultWeight, Map<String, Integer> weights, Map<String, Integer> maxInFlight) {
+        if (defaultWeight < 1 || weights.values().stream().anyMatch(w -> w < 1)) {
+            throw new IllegalArgumentException("Weights must be at least 1");
+        }
+        if (maxInFlight.values().stream().anyMatch(m -> m < 1)) {
+            throw new IllegalArgumentException("Maximum number of deposits in processing must be at least 1");
+        }
+        this.enabled = enabled;
+        this.defaultWeight = defaultWeight;
+        this.weights = Map.copyOf(weights);
+        this.maxInFlight = Map.copyOf(maxInFlight);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the share that the deposit belongs to.
+     *
+     * @param depositDir the deposit directory
+     * @return the depositor id, {@link #UNKNOWN_DEPOSITOR} if it could not be read, or the empty string if the policy is not enabled
+     */
+    public String getShare(Path depositDir) {
+        if (!enabled || depositDir == null) {
+            return "";
+        }
+
+        var file = depositDir.resolve("deposit.properties");
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            var properties = new Properties();
+            properties.load(reader);
+            var depositorId = properties.getProperty(DEPOSITOR_ID);
+            return depositorId == null || depositorId.isBlank() ? UNKNOWN_DEPOSITOR : depositorId.trim();
+        }
+        catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not read depositor of deposit {}", depositDir, e);
+            return UNKNOWN_DEPOSITOR;
+        }
+    }
+
+    public int getWeight(String share) {
+        return weights.getOrDefault(share, defaultWeight);
+    }
+
+    public boolean isAtMaxInFlight(String share, int inFlight) {
+        var max = maxInFlight.get(share);
+        return max != null && inFlight >= max;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The metrics of converting deposits to RDA bags: a timer for each {@link IngestStep}, counters for the outcome of the deposits and for the number of bytes zipped, and a histogram of the number
+ * of payload files per deposit. The metrics are registered under the name of {@link ConvertToRdaBagTask}, so that they are published on the admin connector together with the other metrics.
+ * Each timed step is also emitted as a JFR event for the deposit, see {@link IngestStepEvent}.
+ */
+public class IngestMetrics {
+    /**
+     * Metrics that are not registered anywhere, for components that are used without a metric registry.
+     */
+    public static final IngestMetrics NONE = new IngestMetrics(new MetricRegistry());
+
+    private final Map<IngestStep, Timer> timers = new EnumMap<>(IngestStep.class);
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter bytesZipped;
+    private final Histogram filesPerDeposit;
+
+    public IngestMetrics(MetricRegistry metrics) {
+        for (var step : IngestStep.values()) {
+            timers.put(step, metrics.timer(MetricRegistry.name(ConvertToRdaBagTask.class, step.getName())));
+        }
+        this.accepted = metrics.counter(MetricRegistry.name(ConvertToRdaBagTask.class, "accepted"));
+        this.rejected = metrics.counter(MetricRegistry.name(ConvertToRdaBagTask.class, "rejected"));
+        this.failed = metrics.counter(MetricRegistry.name(ConvertToRdaBagTask.class, "failed"));
+        this.bytesZipped = metrics.counter(MetricRegistry.name(ConvertToRdaBagTask.class, "bytes-zipped"));
+        this.filesPerDeposit = metrics.histogram(MetricRegistry.name(ConvertToRdaBagTask.class, "files-per-deposit"));
+    }
+
+    /**
+     * Starts timing a step of a deposit. The time is recorded, and the JFR event is committed, when the returned timer is closed, also if the step failed.
+     *
+     * @param step      the step
+     * @param depositId the id of the deposit
+     * @return the step timer
+     */
+    public StepTimer time(IngestStep step, String depositId) {
+        return new StepTimer(timers.get(step).time(), step, depositId);
+    }
+
+    public Timer getTimer(IngestStep step) {
+        return timers.get(step);
+    }
+
+    public void depositAccepted() {
+        accepted.inc();
+    }
+
+    public void depositRejected() {
+        rejected.inc();
+    }
+
+    public void depositFailed() {
+        failed.inc();
+    }
+
+    public void zipWritten(long bytes) {
+        bytesZipped.inc(bytes);
+    }
+
+    public void depositLoaded(int fileCount) {
+        filesPerDeposit.update(fileCount);
+    }
+
+    public long getAcceptedCount() {
+        return accepted.getCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.getCount();
+    }
+
+    public long getFailedCount() {
+        return failed.getCount();
+    }
+
+    public long getBytesZipped() {
+        return bytesZipped.getCount();
+    }
+
+    public Histogram getFilesPerDeposit() {
+        return filesPerDeposit;
+    }
+
+    public static class StepTimer implements AutoCloseable {
+        private final Timer.Context context;
+        private final IngestStepEvent event = new IngestStepEvent();
+        private final IngestStep step;
+        private final String depositId;
+        private int fileCount;
+        private long bytes;
+
+        private StepTimer(Timer.Context context, IngestStep step, String depositId) {
+            this.context = context;
+            this.step = step;
+            this.depositId = depositId;
+            event.begin();
+        }
+
+        public void setFileCount(int fileCount) {
+            this.fileCount = fileCount;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            context.stop();
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.depositId = depositId;
+                event.step = step.getName();
+                event.fileCount = fileCount;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
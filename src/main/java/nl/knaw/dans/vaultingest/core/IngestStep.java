@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.Getter;
+
+/**
+ * The steps of converting a deposit to an RDA bag that are timed separately. A {@link ProcessingStage} may consist of several steps.
+ */
+public enum IngestStep {
+    VALIDATE("validate"),
+    LOAD_DEPOSIT("load-deposit"),
+    CATALOG_CREATE("catalog-create"),
+    CATALOG_UPDATE("catalog-update"),
+    DATACITE("datacite"),
+    OAI_ORE("oai-ore"),
+    OAI_ORE_RDF("oai-ore-rdf"),
+    OAI_ORE_JSONLD("oai-ore-jsonld"),
+    PID_MAPPING("pid-mapping"),
+    TAG_MANIFESTS("tag-manifests"),
+    ZIP("zip"),
+    OUTBOX_MOVE("outbox-move");
+
+    /**
+     * The name of the step as used in metric names.
+     */
+    @Getter
+    private final String name;
+
+    IngestStep(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one {@link IngestStep} of one deposit. A recording of these events attributes the CPU time, allocations and I/O of the threads in the recording to the deposit and the step they
+ * were working on. The events are emitted through {@link IngestMetrics#time(IngestStep, String)}; while no recording is running, they cost next to nothing.
+ */
+@Name("nl.knaw.dans.vaultingest.IngestStep")
+@Label("Ingest Step")
+@Category({ "DANS", "Vault Ingest" })
+@Description("A step in converting a deposit to an RDA bag")
+@StackTrace(false)
+class IngestStepEvent extends Event {
+    @Label("Deposit Id")
+    String depositId;
+
+    @Label("Step")
+    String step;
+
+    @Label("File Count")
+    @Description("The number of payload files of the deposit, if known at the end of the step")
+    int fileCount;
+
+    @Label("Bytes")
+    @Description("The number of bytes written by the step, if any")
+    @DataAmount
+    long bytes;
+}
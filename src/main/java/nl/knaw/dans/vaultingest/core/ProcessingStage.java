@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+/**
+ * The stages a deposit goes through while it is converted to an RDA bag, in the order in which they are run. Each stage is dominated by a different resource, so that their concurrency can be
+ * limited independently.
+ */
+public enum ProcessingStage {
+    /**
+     * Validating the bag with dd-validate-dans-bag; waits on a remote service.
+     */
+    VALIDATION,
+    /**
+     * Reading the deposit properties and the metadata of the bag; disk bound.
+     */
+    LOAD,
+    /**
+     * Registering the dataset (version) in the vault catalog; waits on a remote service.
+     */
+    CATALOG,
+    /**
+     * Generating the metadata files of the RDA bag; CPU bound.
+     */
+    CONVERSION,
+    /**
+     * Writing the ZIP file; disk bound.
+     */
+    ZIP,
+    /**
+     * Saving the deposit properties and moving the deposit to the outbox; disk bound.
+     */
+    FINISH
+}
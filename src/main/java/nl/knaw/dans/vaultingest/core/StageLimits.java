@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of deposits that can be in a given {@link ProcessingStage} at the same time. Stages without a limit are not restricted. A deposit that has to wait for a permit blocks its
+ * thread, which is cheap when the deposits run on virtual threads.
+ */
+@Slf4j
+public class StageLimits {
+    private final Map<ProcessingStage, Semaphore> semaphores = new EnumMap<>(ProcessingStage.class);
+
+    public StageLimits(Map<ProcessingStage, Integer> limits) {
+        for (var entry : limits.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+
+            if (entry.getValue() < 1) {
+                throw new IllegalArgumentException(String.format("Limit for stage %s must be at least 1, but was %d", entry.getKey(), entry.getValue()));
+            }
+
+            semaphores.put(entry.getKey(), new Semaphore(entry.getValue(), true));
+        }
+    }
+
+    public static StageLimits unlimited() {
+        return new StageLimits(Map.of());
+    }
+
+    /**
+     * A permit to be in a stage. Closing it lets the next deposit enter the stage.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Enters the stage, blocking until a permit for it is available. The permit must be closed when the stage is done, preferably with try-with-resources.
+     *
+     * @param stage the stage to enter
+     * @return the permit
+     */
+    public Permit enter(ProcessingStage stage) {
+        var semaphore = semaphores.get(stage);
+
+        if (semaphore == null) {
+            return () -> {
+            };
+        }
+
+        acquire(stage, semaphore);
+        var released = new AtomicBoolean();
+
+        return () -> {
+            // guard against releasing more permits than were acquired
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of deposits that can still enter the stage without waiting, or -1 if the stage is not limited.
+     *
+     * @param stage the stage
+     * @return the number of available permits
+     */
+    public int getAvailablePermits(ProcessingStage stage) {
+        var semaphore = semaphores.get(stage);
+        return semaphore == null ? -1 : semaphore.availablePermits();
+    }
+
+    private void acquire(ProcessingStage stage, Semaphore semaphore) {
+        if (semaphore.availablePermits() == 0) {
+            log.debug("Waiting for a permit for stage {}; {} deposits waiting", stage, semaphore.getQueueLength());
+        }
+
+        try {
+            semaphore.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while waiting for a permit for stage %s", stage), e);
+        }
+    }
+}
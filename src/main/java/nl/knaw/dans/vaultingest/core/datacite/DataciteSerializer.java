@@ -16,24 +16,72 @@
 package nl.knaw.dans.vaultingest.core.datacite;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import org.datacite.schema.kernel_4.Resource;
 
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class DataciteSerializer {
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    // JAXBContext is thread-safe and expensive to create, so it is created once, on first use. Marshallers are cheap but not thread-safe; each serialization borrows one from the pool and returns it
+    // afterwards, so there are at most as many marshallers as there are concurrent serializations.
+    private static class ContextHolder {
+        private static final JAXBContext context = createContext();
+
+        private static JAXBContext createContext() {
+            try {
+                return JAXBContext.newInstance(Resource.class);
+            }
+            catch (JAXBException e) {
+                throw new IllegalStateException("Unable to create JAXB context for DataCite resources", e);
+            }
+        }
+    }
+
+    private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+
     public String serialize(Resource resource) {
+        var output = new ByteArrayOutputStream();
+        serialize(resource, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the resource as UTF-8 encoded XML to the output stream. The stream is not closed.
+     *
+     * @param resource the resource to serialize
+     * @param output   the stream to write to
+     */
+    public void serialize(Resource resource, OutputStream output) {
         try {
-            var context = JAXBContext.newInstance(Resource.class);
-            var marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            var marshaller = marshallers.poll();
+
+            if (marshaller == null) {
+                marshaller = createMarshaller();
+            }
 
-            var writer = new StringWriter();
-            marshaller.marshal(resource, writer);
-            return writer.toString();
+            try {
+                marshaller.marshal(resource, output);
+            }
+            finally {
+                marshallers.offer(marshaller);
+            }
         }
         catch (Exception e) {
             throw new RuntimeException(String.format("Error converting resource to XML string: %s", e.getMessage()), e);
         }
     }
+
+    private Marshaller createMarshaller() throws JAXBException {
+        var marshaller = ContextHolder.context.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, ENCODING);
+        return marshaller;
+    }
 }
@@ -19,6 +19,8 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import nl.knaw.dans.vaultingest.core.mappings.DdmReader;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DdmMetadata;
 import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.apache.commons.lang3.StringUtils;
@@ -47,6 +49,7 @@ public class Deposit {
 
     private final String id;
     private final Document ddm;
+    // null if files.xml was too large to be read into a DOM; the payload files then have no files.xml node
     private final Document filesXml;
     private final List<PayloadFile> payloadFiles;
     private final Path path;
@@ -58,6 +61,9 @@ public class Deposit {
     private Integer objectVersion = 1;
     @Setter
     private String dataSupplier;
+    // read from the DDM on first use, and shared by all conversions of this deposit
+    @ToString.Exclude
+    private volatile DdmMetadata ddmMetadata;
 
     public State getState() {
         return State.valueOf(properties.getStateLabel());
@@ -128,6 +134,18 @@ public class Deposit {
         return doi;
     }
 
+    public DdmMetadata getDdmMetadata() {
+        var result = ddmMetadata;
+
+        if (result == null) {
+            // the metadata is immutable, so reading it twice in a race is harmless
+            result = DdmReader.read(ddm);
+            ddmMetadata = result;
+        }
+
+        return result;
+    }
+
     public Path getBagDir() {
         return bag.getBagDir();
     }
@@ -18,14 +18,12 @@ package nl.knaw.dans.vaultingest.core.deposit;
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.domain.Manifest;
 import gov.loc.repository.bagit.hash.SupportedAlgorithm;
-import gov.loc.repository.bagit.writer.ManifestWriter;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -84,8 +82,4 @@ public class DepositBag {
     public Path getBagDir() {
         return bag.getRootDir();
     }
-
-    public void writeTagManifests() throws IOException {
-        ManifestWriter.writeTagManifests(bag.getTagManifests(), bag.getRootDir(), bag.getRootDir(), StandardCharsets.UTF_8);
-    }
 }
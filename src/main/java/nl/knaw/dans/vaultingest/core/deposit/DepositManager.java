@@ -18,33 +18,46 @@ package nl.knaw.dans.vaultingest.core.deposit;
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 import gov.loc.repository.bagit.reader.BagReader;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.apache.commons.configuration2.FileBasedConfiguration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
-import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Slf4j
-@RequiredArgsConstructor
 public class DepositManager {
+    /**
+     * Above this size files.xml is read with a streaming parser instead of into a DOM.
+     */
+    public static final long DEFAULT_FILES_XML_STREAMING_THRESHOLD = 50L * 1024 * 1024;
+
     private final XmlReader xmlReader;
+    private final FilesXmlReader filesXmlReader = new FilesXmlReader();
+    private final long filesXmlStreamingThreshold;
+
+    public DepositManager(XmlReader xmlReader) {
+        this(xmlReader, DEFAULT_FILES_XML_STREAMING_THRESHOLD);
+    }
+
+    public DepositManager(XmlReader xmlReader, long filesXmlStreamingThreshold) {
+        this.xmlReader = xmlReader;
+        this.filesXmlStreamingThreshold = filesXmlStreamingThreshold;
+    }
 
     public Deposit loadDeposit(Path path, Map<String, String> dataSupplierMap) {
         try {
@@ -56,8 +69,24 @@ public class DepositManager {
             log.info("Reading metadata/dataset.xml from path {}", bagDir);
             var ddm = readXmlFile(bagDir.resolve(Path.of("metadata", "dataset.xml")));
 
-            log.info("Reading metadata/files.xml from path {}", bagDir);
-            var filesXml = readXmlFile(bagDir.resolve(Path.of("metadata", "files.xml")));
+            var filesXmlPath = bagDir.resolve(Path.of("metadata", "files.xml"));
+            Document filesXml = null;
+            List<Element> fileElements = null;
+            FilesXmlIndex filesXmlIndex;
+
+            if (Files.size(filesXmlPath) > filesXmlStreamingThreshold) {
+                // large deposits: do not keep a DOM of files.xml in memory
+                log.info("Streaming metadata/files.xml from path {}", bagDir);
+                filesXmlIndex = filesXmlReader.read(filesXmlPath);
+            }
+            else {
+                log.info("Reading metadata/files.xml from path {}", bagDir);
+                filesXml = readXmlFile(filesXmlPath);
+                fileElements = FilesXmlIndex.getFileElements(filesXml);
+                var indexBuilder = FilesXmlIndex.builder();
+                fileElements.forEach(indexBuilder::add);
+                filesXmlIndex = indexBuilder.build();
+            }
 
             log.info("Generating original file paths if file exists");
             var originalFilePaths = getOriginalFilepaths(bagDir);
@@ -66,7 +95,7 @@ public class DepositManager {
             var depositProperties = getDepositProperties(path);
 
             log.info("Generating payload file list on path {}", path);
-            var payloadFiles = getPayloadFiles(bagDir, bag, ddm, filesXml, originalFilePaths);
+            var payloadFiles = getPayloadFiles(bagDir, bag, ddm, filesXmlIndex, fileElements, originalFilePaths);
 
             final String depositorId = depositProperties.getDepositorId();
             log.info("Looking up dataSupplier for depositorId {}", depositorId);
@@ -150,19 +179,12 @@ public class DepositManager {
 
     private OriginalFilepaths getOriginalFilepaths(Path bagDir) throws IOException {
         var originalFilepathsFile = bagDir.resolve("original-filepaths.txt");
-        var result = new OriginalFilepaths();
 
         if (Files.exists(originalFilepathsFile)) {
-            try (var lines = Files.lines(originalFilepathsFile)) {
-                lines.filter(StringUtils::isNotBlank)
-                    .map(line -> line.split("\\s+", 2))
-                    .forEach(line -> result.addMapping(
-                        Path.of(line[1]), Path.of(line[0]))
-                    );
-            }
+            return OriginalFilepaths.load(originalFilepathsFile);
         }
 
-        return result;
+        return new OriginalFilepaths();
     }
 
     private Map<Path, Map<SupportedAlgorithm, String>> getPrecomputedChecksums(Path bagDir, Bag bag) {
@@ -183,24 +205,26 @@ public class DepositManager {
         return manifests;
     }
 
-    private List<PayloadFile> getPayloadFiles(Path bagDir, Bag bag, Document ddm, Document filesXml, OriginalFilepaths originalFilepaths) {
+    private List<PayloadFile> getPayloadFiles(Path bagDir, Bag bag, Document ddm, FilesXmlIndex index, List<Element> fileElements, OriginalFilepaths originalFilepaths) {
         var manifests = getPrecomputedChecksums(bagDir, bag);
+        var result = new ArrayList<PayloadFile>(index.size());
+
+        for (int i = 0; i < index.size(); i++) {
+            var physicalPath = bagDir.resolve(originalFilepaths.getPhysicalPath(Path.of(index.getFilepath(i))));
+            var checksums = manifests.get(bagDir.relativize(physicalPath));
+
+            result.add(PayloadFile.builder()
+                .id(UUID.randomUUID().toString())
+                .physicalPath(physicalPath)
+                .filesXmlNode(fileElements != null ? fileElements.get(i) : null)
+                .filesXmlIndex(index)
+                .filesXmlIndexPosition(i)
+                .ddmNode(ddm)
+                .checksums(checksums)
+                .build());
+        }
 
-        return XPathEvaluator.nodes(filesXml, "/files:files/files:file")
-            .map(node -> {
-                var filePath = node.getAttributes().getNamedItem("filepath").getTextContent();
-                var physicalPath = bagDir.resolve(originalFilepaths.getPhysicalPath(Path.of(filePath)));
-                var checksums = manifests.get(bagDir.relativize(physicalPath));
-
-                return PayloadFile.builder()
-                    .id(UUID.randomUUID().toString())
-                    .physicalPath(physicalPath)
-                    .filesXmlNode(node)
-                    .ddmNode(ddm)
-                    .checksums(checksums)
-                    .build();
-            })
-            .collect(Collectors.toList());
+        return result;
     }
 
 }
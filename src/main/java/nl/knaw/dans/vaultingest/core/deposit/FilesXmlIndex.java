@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The attributes of the files in files.xml that are needed by the mappings, stored column by column. It is built in a single pass over files.xml, so that the mappings do not have to evaluate XPath
+ * expressions for each file. The file at position i in files.xml is at index i in each column. Values that occur many times, like the access rights, are stored only once.
+ */
+public class FilesXmlIndex implements XmlNamespaces {
+    private final String[] filepaths;
+    private final String[] accessibleToRights;
+    private final String[] visibleToRights;
+    private final String[] descriptions;
+
+    private FilesXmlIndex(Builder builder) {
+        this.filepaths = builder.filepaths.toArray(String[]::new);
+        this.accessibleToRights = builder.accessibleToRights.toArray(String[]::new);
+        this.visibleToRights = builder.visibleToRights.toArray(String[]::new);
+        this.descriptions = builder.descriptions.toArray(String[]::new);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return filepaths.length;
+    }
+
+    public String getFilepath(int index) {
+        return filepaths[index];
+    }
+
+    public String getAccessibleToRights(int index) {
+        return accessibleToRights[index];
+    }
+
+    public String getVisibleToRights(int index) {
+        return visibleToRights[index];
+    }
+
+    public String getDescription(int index) {
+        return descriptions[index];
+    }
+
+    /**
+     * Returns the file elements of files.xml, in document order.
+     *
+     * @param filesXml the files.xml document
+     * @return the files:file elements
+     */
+    public static List<Element> getFileElements(Document filesXml) {
+        var result = new ArrayList<Element>();
+        var root = filesXml.getDocumentElement();
+
+        if (root == null || !isElement(root, NAMESPACE_FILES_XML, "files")) {
+            return result;
+        }
+
+        for (var child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isElement(child, NAMESPACE_FILES_XML, "file")) {
+                result.add((Element) child);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the text content of the first child element with the given name, or null if there is none.
+     *
+     * @param parent    the parent node
+     * @param namespace the namespace of the child element
+     * @param localName the local name of the child element
+     * @return the text content, or null
+     */
+    public static String getChildText(Node parent, String namespace, String localName) {
+        for (var child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (isElement(child, namespace, localName)) {
+                return child.getTextContent();
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isElement(Node node, String namespace, String localName) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+            && Objects.equals(namespace, node.getNamespaceURI())
+            && Objects.equals(localName, node.getLocalName());
+    }
+
+    public static class Builder {
+        private final List<String> filepaths = new ArrayList<>();
+        private final List<String> accessibleToRights = new ArrayList<>();
+        private final List<String> visibleToRights = new ArrayList<>();
+        private final List<String> descriptions = new ArrayList<>();
+        private final Map<String, String> rightsValues = new HashMap<>();
+
+        /**
+         * Adds a file.
+         *
+         * @return the index of the file
+         */
+        public int add(String filepath, String accessibleToRights, String visibleToRights, String description) {
+            this.filepaths.add(filepath);
+            this.accessibleToRights.add(dedup(accessibleToRights));
+            this.visibleToRights.add(dedup(visibleToRights));
+            this.descriptions.add(description);
+            return filepaths.size() - 1;
+        }
+
+        /**
+         * Adds a file from its files:file element.
+         *
+         * @return the index of the file
+         */
+        public int add(Element fileElement) {
+            return add(
+                fileElement.getAttribute("filepath"),
+                getChildText(fileElement, NAMESPACE_FILES_XML, "accessibleToRights"),
+                getChildText(fileElement, NAMESPACE_FILES_XML, "visibleToRights"),
+                getChildText(fileElement, NAMESPACE_DCTERMS, "description"));
+        }
+
+        public FilesXmlIndex build() {
+            return new FilesXmlIndex(this);
+        }
+
+        private String dedup(String value) {
+            return value == null ? null : rightsValues.computeIfAbsent(value, v -> v);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Reads files.xml with a streaming (StAX) parser directly into a {@link FilesXmlIndex}, without building a DOM. Memory use is proportional to the values kept in the index, not to the size of the
+ * document, so that deposits with hundreds of thousands of files can be loaded in a bounded heap.
+ */
+public class FilesXmlReader implements XmlNamespaces {
+    private final XMLInputFactory factory;
+
+    public FilesXmlReader() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public FilesXmlIndex read(Path filesXml) throws IOException, XMLStreamException {
+        try (var input = new BufferedInputStream(Files.newInputStream(filesXml))) {
+            return read(input);
+        }
+    }
+
+    public FilesXmlIndex read(InputStream filesXml) throws XMLStreamException {
+        var reader = factory.createXMLStreamReader(filesXml);
+
+        try {
+            return read(reader);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private FilesXmlIndex read(XMLStreamReader reader) throws XMLStreamException {
+        var builder = FilesXmlIndex.builder();
+        var depth = 0;
+        var isFilesDocument = false;
+        var inFile = false;
+        String filepath = null;
+        String accessibleToRights = null;
+        String visibleToRights = null;
+        String description = null;
+
+        while (reader.hasNext()) {
+            var event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+
+                if (depth == 1) {
+                    isFilesDocument = isElement(reader, NAMESPACE_FILES_XML, "files");
+                }
+                else if (depth == 2 && isFilesDocument && isElement(reader, NAMESPACE_FILES_XML, "file")) {
+                    inFile = true;
+                    // same as Element.getAttribute, which is used for the DOM
+                    filepath = Objects.requireNonNullElse(reader.getAttributeValue(null, "filepath"), "");
+                    accessibleToRights = null;
+                    visibleToRights = null;
+                    description = null;
+                }
+                else if (depth == 3 && inFile) {
+                    // only the first occurrence of each element counts, as with the DOM
+                    if (accessibleToRights == null && isElement(reader, NAMESPACE_FILES_XML, "accessibleToRights")) {
+                        accessibleToRights = readText(reader);
+                        depth--;
+                    }
+                    else if (visibleToRights == null && isElement(reader, NAMESPACE_FILES_XML, "visibleToRights")) {
+                        visibleToRights = readText(reader);
+                        depth--;
+                    }
+                    else if (description == null && isElement(reader, NAMESPACE_DCTERMS, "description")) {
+                        description = readText(reader);
+                        depth--;
+                    }
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 2 && inFile) {
+                    builder.add(filepath, accessibleToRights, visibleToRights, description);
+                    inFile = false;
+                }
+
+                depth--;
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Reads the text content of the current element, including that of any nested elements, like Node.getTextContent does. Afterward the reader is positioned on the end tag of the element.
+     */
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        var text = new StringBuilder();
+        var level = 1;
+
+        while (level > 0) {
+            var event = reader.next();
+
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> level++;
+                case XMLStreamConstants.END_ELEMENT -> level--;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> text.append(reader.getText());
+                default -> {
+                }
+            }
+        }
+
+        return text.toString();
+    }
+
+    private boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+        return Objects.equals(namespace, reader.getNamespaceURI()) && Objects.equals(localName, reader.getLocalName());
+    }
+}
@@ -22,6 +22,10 @@ public class MigrationDepositManager extends DepositManager {
         super(xmlReader);
     }
 
+    public MigrationDepositManager(XmlReader xmlReader, long filesXmlStreamingThreshold) {
+        super(xmlReader, filesXmlStreamingThreshold);
+    }
+
     @Override
     Deposit customizeDeposit(Deposit deposit, DepositProperties depositProperties) {
         deposit.setNbn(depositProperties.getDataverseNbn());
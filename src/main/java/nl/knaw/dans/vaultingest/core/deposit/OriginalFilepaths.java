@@ -15,57 +15,79 @@
  */
 package nl.knaw.dans.vaultingest.core.deposit;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
-@AllArgsConstructor
+/**
+ * The mapping between the logical paths of the payload files (as in files.xml) and their physical paths in the bag, as listed in original-filepaths.txt. If a path occurs in more than one
+ * mapping, the first one wins.
+ */
 @ToString
 public class OriginalFilepaths {
-    private final List<Mapping> mappings = new ArrayList<>();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Map<Path, Path> physicalByLogicalPath = new HashMap<>();
+    private final Map<Path, Path> logicalByPhysicalPath = new HashMap<>();
+
+    /**
+     * Reads original-filepaths.txt line by line. Each line contains the physical path, followed by whitespace and the logical path.
+     *
+     * @param originalFilepathsFile the file to read
+     * @return the mappings
+     * @throws IOException if the file could not be read
+     */
+    public static OriginalFilepaths load(Path originalFilepathsFile) throws IOException {
+        var result = new OriginalFilepaths();
+
+        try (var reader = Files.newBufferedReader(originalFilepathsFile, StandardCharsets.UTF_8)) {
+            var lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+
+                var parts = WHITESPACE.split(line, 2);
+
+                if (parts.length != 2) {
+                    throw new IllegalStateException(String.format("Line %d of %s does not contain a physical and a logical path", lineNumber, originalFilepathsFile));
+                }
+
+                result.addMapping(Path.of(parts[1]), Path.of(parts[0]));
+            }
+        }
+
+        return result;
+    }
 
     public Path getLogicalPath(Path physicalPath) {
         // return the logical path if there is a mapping for the given path
         // otherwise, just the path
-        return mappings.stream()
-            .filter(mapping -> mapping.getPhysicalPath().equals(physicalPath))
-            .map(Mapping::getLogicalPath)
-            .findFirst()
-            .orElse(physicalPath);
+        return logicalByPhysicalPath.getOrDefault(physicalPath, physicalPath);
     }
 
     public Path getPhysicalPath(Path logicalPath) {
         // return the physical path if there is a mapping for the given path
         // otherwise, just the path
         // note this does not check if paths exist
-        return mappings.stream()
-            .filter(mapping -> mapping.getLogicalPath().equals(logicalPath))
-            .map(Mapping::getPhysicalPath)
-            .findFirst()
-            .orElse(logicalPath);
+        return physicalByLogicalPath.getOrDefault(logicalPath, logicalPath);
     }
 
     public void addMapping(Path logicalPath, Path physicalPath) {
-        mappings.add(new Mapping(logicalPath, physicalPath));
-    }
+        var physical = physicalPath != null ? physicalPath : logicalPath;
 
-    @AllArgsConstructor
-    @ToString
-    private static class Mapping {
-        @Getter
-        private final Path logicalPath;
-        private final Path physicalPath;
-
-        public Path getPhysicalPath() {
-            if (physicalPath != null) {
-                return physicalPath;
-            }
-
-            return logicalPath;
-        }
+        physicalByLogicalPath.putIfAbsent(logicalPath, physical);
+        logicalByPhysicalPath.putIfAbsent(physical, logicalPath);
     }
 }
@@ -20,6 +20,7 @@ import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.w3c.dom.Node;
 
 import java.io.BufferedInputStream;
@@ -40,8 +41,14 @@ public class PayloadFile {
     private final Node filesXmlNode;
     @Getter
     private final Node ddmNode;
+    @Getter
     private final Path physicalPath;
     private final Map<SupportedAlgorithm, String> checksums;
+    // if set, the files.xml attributes are read from the index instead of from filesXmlNode
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final FilesXmlIndex filesXmlIndex;
+    private final int filesXmlIndexPosition;
 
     public Path getDirectoryLabel() {
         return getFilePath().getParent();
@@ -65,7 +72,35 @@ public class PayloadFile {
         return new BufferedInputStream(new FileInputStream(physicalPath.toFile()));
     }
 
+    public String getAccessibleToRights() {
+        if (filesXmlIndex != null) {
+            return filesXmlIndex.getAccessibleToRights(filesXmlIndexPosition);
+        }
+
+        return FilesXmlIndex.getChildText(filesXmlNode, XmlNamespaces.NAMESPACE_FILES_XML, "accessibleToRights");
+    }
+
+    public String getVisibleToRights() {
+        if (filesXmlIndex != null) {
+            return filesXmlIndex.getVisibleToRights(filesXmlIndexPosition);
+        }
+
+        return FilesXmlIndex.getChildText(filesXmlNode, XmlNamespaces.NAMESPACE_FILES_XML, "visibleToRights");
+    }
+
+    public String getDescription() {
+        if (filesXmlIndex != null) {
+            return filesXmlIndex.getDescription(filesXmlIndexPosition);
+        }
+
+        return FilesXmlIndex.getChildText(filesXmlNode, XmlNamespaces.NAMESPACE_DCTERMS, "description");
+    }
+
     private String getFilePathAttribute() {
+        if (filesXmlIndex != null) {
+            return filesXmlIndex.getFilepath(filesXmlIndexPosition);
+        }
+
         return filesXmlNode.getAttributes().getNamedItem("filepath").getTextContent();
     }
 
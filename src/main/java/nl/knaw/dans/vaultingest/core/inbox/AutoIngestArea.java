@@ -16,22 +16,31 @@
 package nl.knaw.dans.vaultingest.core.inbox;
 
 import io.dropwizard.lifecycle.Managed;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultingest.core.ConvertToRdaBagTaskFactory;
 import nl.knaw.dans.vaultingest.core.deposit.Outbox;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 
 @Slf4j
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class AutoIngestArea implements Managed {
-    private final ExecutorService executorService;
+    private final Executor executor;
     private final IngestAreaWatcher ingestAreaWatcher;
     private final ConvertToRdaBagTaskFactory convertToRdaBagTaskFactory;
     private final Outbox outbox;
 
+    // The executor may block when its queue is full, so new items are handed over to it from a separate thread. That way the scan of the
+    // items already in the inbox at start-up does not hold up the start of the application. The queue is unbounded, but it only holds the
+    // paths of the items; a deposit is not read until its task is run.
+    private final BlockingQueue<Path> newItems = new LinkedBlockingQueue<>();
+    private Thread handOverThread;
+
     @Override
     public void start() {
         log.info("Starting AutoIngestArea for outbox {}", outbox);
@@ -39,9 +48,13 @@ public class AutoIngestArea implements Managed {
             outbox.init(true);
             log.debug("Initializing outbox {}", outbox);
 
+            handOverThread = new Thread(this::handOver, "auto-ingest-hand-over");
+            handOverThread.setDaemon(true);
+            handOverThread.start();
+
             ingestAreaWatcher.start((path) -> {
                 log.debug("New item in inbox; path = {}", path);
-                executorService.execute(convertToRdaBagTaskFactory.create(path, outbox));
+                newItems.add(path);
             });
         }
         catch (IOException e) {
@@ -49,4 +62,30 @@ public class AutoIngestArea implements Managed {
             throw new IllegalStateException("Error while starting the ingest area watcher for outbox " + outbox, e);
         }
     }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (handOverThread != null) {
+            handOverThread.interrupt();
+            handOverThread.join();
+        }
+    }
+
+    private void handOver() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                var path = newItems.take();
+                try {
+                    executor.execute(convertToRdaBagTaskFactory.create(path, outbox));
+                }
+                catch (RuntimeException e) {
+                    log.error("Could not hand over new item {} for processing", path, e);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Stopped handing over new items for outbox {}; {} item(s) not handed over", outbox, newItems.size());
+    }
 }
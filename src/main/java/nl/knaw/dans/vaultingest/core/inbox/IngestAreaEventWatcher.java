@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches a directory for new subdirectories using a {@link WatchService}, so that a new deposit is noticed as soon as the operating system reports it, without scanning the directory over and over.
+ * The directory is scanned in full only at start-up and when the operating system reports that events were lost (an overflow). If the file system does not support watching, this falls back to a
+ * {@link IngestAreaDirectoryWatcher} with the given polling interval.
+ */
+@Slf4j
+public class IngestAreaEventWatcher implements IngestAreaWatcher, Managed {
+    private final Path directory;
+    private final long fallbackPollingInterval;
+
+    // the directories that were already reported, so that a rescan does not report them again
+    private final Set<Path> reported = ConcurrentHashMap.newKeySet();
+
+    private WatchService watchService;
+    private Thread thread;
+    private IngestAreaDirectoryWatcher fallback;
+
+    public IngestAreaEventWatcher(Path directory, long fallbackPollingInterval) {
+        this.directory = directory.toAbsolutePath();
+        this.fallbackPollingInterval = fallbackPollingInterval;
+    }
+
+    @Override
+    public void start(IngestAreaItemCreated callback) {
+        log.debug("Starting listener; path = {}", directory);
+
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException(String.format("Could not start monitoring %s: not a directory", directory));
+        }
+
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            // register before processing the existing items, so that no deposit can slip in between
+            directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            log.warn("Could not watch {} for events; polling it every {} ms instead", directory, fallbackPollingInterval, e);
+            closeWatchService();
+            fallback = new IngestAreaDirectoryWatcher(fallbackPollingInterval, directory);
+            fallback.start(callback);
+            return;
+        }
+
+        log.debug("Processing existing items in {}", directory);
+        scan(callback);
+
+        thread = new Thread(() -> watch(callback), "inbox-watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (fallback != null) {
+            fallback.stop();
+            return;
+        }
+
+        log.debug("Stopping WatchService for directory {}", directory);
+        closeWatchService();
+
+        if (thread != null) {
+            thread.join(1000);
+        }
+    }
+
+    private void watch(IngestAreaItemCreated callback) {
+        while (true) {
+            try {
+                var key = watchService.take();
+
+                for (var event : key.pollEvents()) {
+                    handle(event, callback);
+                }
+
+                if (!key.reset()) {
+                    log.error("Directory {} can no longer be watched; new deposits will not be noticed", directory);
+                    return;
+                }
+            }
+            catch (ClosedWatchServiceException | InterruptedException e) {
+                log.debug("WatchService for directory {} stopped", directory);
+                return;
+            }
+            catch (RuntimeException e) {
+                log.error("Error while handling events for directory {}", directory, e);
+            }
+        }
+    }
+
+    private void handle(WatchEvent<?> event, IngestAreaItemCreated callback) {
+        if (event.kind() == OVERFLOW) {
+            log.warn("Events for directory {} were lost; scanning it", directory);
+            scan(callback);
+            return;
+        }
+
+        var path = directory.resolve((Path) event.context());
+
+        if (event.kind() == ENTRY_CREATE) {
+            log.trace("Entry created: {}", path);
+            report(path, callback);
+        }
+        else if (event.kind() == ENTRY_DELETE) {
+            reported.remove(path);
+        }
+    }
+
+    private void scan(IngestAreaItemCreated callback) {
+        try (var files = Files.list(directory)) {
+            var present = files.filter(Files::isDirectory).map(Path::toAbsolutePath).toList();
+            reported.retainAll(present);
+            present.forEach(dir -> report(dir, callback));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not list %s", directory), e);
+        }
+    }
+
+    private void report(Path path, IngestAreaItemCreated callback) {
+        if (Files.isDirectory(path) && reported.add(path)) {
+            callback.onItemCreated(path);
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            }
+            catch (IOException e) {
+                log.warn("Could not close WatchService for directory {}", directory, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+public enum IngestAreaWatcherMode {
+    /**
+     * Reacts to the file system events for the directory, as delivered by the operating system (inotify on Linux). The directory is only scanned in full at start-up and when events were lost.
+     */
+    EVENTS,
+    /**
+     * Scans the directory at a fixed interval. Use this for file systems that do not deliver events, such as network file systems on which other hosts create the deposits.
+     */
+    POLLING
+}
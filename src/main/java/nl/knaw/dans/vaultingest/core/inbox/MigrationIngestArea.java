@@ -24,14 +24,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Slf4j
 @AllArgsConstructor
 public class MigrationIngestArea {
-    private final ExecutorService executorService;
+    private final Executor executor;
     private final ConvertToRdaBagTaskFactory convertToRdaBagTaskFactory;
     private final Path inboxPath;
     private final Outbox outbox;
@@ -59,7 +59,7 @@ public class MigrationIngestArea {
             output.init(!isBatch || continuePrevious);
 
             for (var in : input) {
-                executorService.execute(convertToRdaBagTaskFactory.create(in, output));
+                executor.execute(convertToRdaBagTaskFactory.create(in, output));
             }
         }
         catch (IOException e) {
@@ -30,7 +30,7 @@ import java.util.stream.Collectors;
 public class AlternativeTitles {
     // CIT002
     public static Optional<Statement> toRDF(Resource resource, Deposit deposit) {
-        return toAlternativeTitle(resource, getAlternativeTitles(deposit.getDdm()));
+        return toAlternativeTitle(resource, deposit.getDdmMetadata().getAlternativeTitles());
     }
 
     static List<String> getAlternativeTitles(Document ddm) {
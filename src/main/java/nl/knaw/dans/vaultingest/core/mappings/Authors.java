@@ -36,16 +36,16 @@ import java.util.stream.Collectors;
 public class Authors extends Base {
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
         var results = new ArrayList<DatasetRelation>();
-        var ddm = deposit.getDdm();
+        var metadata = deposit.getDdmMetadata();
 
         // CIT005
-        results.addAll(getCreators(ddm));
+        results.addAll(metadata.getCreators());
 
         // CIT006
-        results.addAll(getAuthors(ddm));
+        results.addAll(metadata.getAuthors());
 
         // CIT007
-        results.addAll(getOrganizations(ddm));
+        results.addAll(metadata.getOrganizations());
 
         return toAuthors(resource, results);
     }
@@ -30,7 +30,7 @@ public class AvailableDate extends Base {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     public static Optional<Statement> toRDF(Resource resource, Deposit deposit) {
-        var available = getAvailableDate(deposit.getDdm());
+        var available = deposit.getDdmMetadata().getAvailableDate();
         return toAvailable(resource, available);
     }
 
@@ -32,7 +32,7 @@ import java.util.stream.Stream;
 public class Contributors extends Base {
 
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
-        return toContributors(resource, getContributors(deposit.getDdm()));
+        return toContributors(resource, deposit.getDdmMetadata().getContributors());
     }
 
     static List<Contributor> getContributors(Document document) {
@@ -34,6 +34,18 @@ public class DataFile extends Base {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     public static List<Statement> toRDF(Resource resource, PayloadFile payloadFile) {
+        return toRDF(resource, payloadFile, getAccessRights(payloadFile.getDdmNode()));
+    }
+
+    /**
+     * Converts a payload file to RDF.
+     *
+     * @param resource     the resource of the file
+     * @param payloadFile  the file
+     * @param accessRights the access rights of the dataset, as returned by {@link #getAccessRights(Node)}; passed in so that they are looked up only once per deposit
+     * @return the statements
+     */
+    public static List<Statement> toRDF(Resource resource, PayloadFile payloadFile, String accessRights) {
         var result = new ArrayList<Statement>();
 
         // FIL001A
@@ -49,29 +61,21 @@ public class DataFile extends Base {
             .ifPresent(result::add);
 
         // FIL004A
-        toBasicTerm(resource, SchemaDO.description, getDescription(payloadFile.getFilesXmlNode()))
+        toBasicTerm(resource, SchemaDO.description, payloadFile.getDescription())
             .ifPresent(result::add);
 
         // FIL005, FIL006
-        toBasicTerm(resource, DVCore.restricted, getRestricted(payloadFile.getFilesXmlNode(), payloadFile.getDdmNode()))
+        toBasicTerm(resource, DVCore.restricted, Boolean.toString(isRestricted(payloadFile.getAccessibleToRights(), accessRights)))
             .ifPresent(result::add);
 
         return result;
     }
 
-    static String getDescription(Node filesXmlNode) {
-        return XPathEvaluator.strings(filesXmlNode, "dcterms:description")
-            .findFirst().orElse(null);
-    }
-
-    static String getRestricted(Node filesXmlNode, Node ddm) {
-        return Boolean.toString(isRestricted(filesXmlNode, ddm));
-    }
-
     static boolean isRestricted(Node filesXmlNode, Node ddm) {
-        var accessibleToRights = getAccessibleToRights(filesXmlNode);
-        var accessRights = getAccessRights(ddm);
+        return isRestricted(getAccessibleToRights(filesXmlNode), getAccessRights(ddm));
+    }
 
+    static boolean isRestricted(String accessibleToRights, String accessRights) {
         if (accessibleToRights != null) {
             // if ANONYMOUS then false else true
             return !"ANONYMOUS".equals(accessibleToRights);
@@ -91,7 +95,7 @@ public class DataFile extends Base {
             .orElse(null);
     }
 
-    static String getAccessRights(Node ddm) {
+    public static String getAccessRights(Node ddm) {
         return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:accessRights")
             .map(String::trim)
             .findFirst()
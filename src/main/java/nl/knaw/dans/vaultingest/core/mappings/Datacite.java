@@ -27,27 +27,28 @@ import java.util.List;
 public class Datacite {
 
     public static String getTitle(Deposit deposit) {
-        return Titles.getTitle(deposit.getDdm());
+        return deposit.getDdmMetadata().getTitle();
     }
 
     public static List<DatasetRelation> getAuthors(Deposit deposit) {
+        var metadata = deposit.getDdmMetadata();
         var items = new ArrayList<DatasetRelation>();
-        items.addAll(Authors.getAuthors(deposit.getDdm()));
-        items.addAll(Authors.getCreators(deposit.getDdm()));
-        items.addAll(Authors.getOrganizations(deposit.getDdm()));
+        items.addAll(metadata.getAuthors());
+        items.addAll(metadata.getCreators());
+        items.addAll(metadata.getOrganizations());
 
         return items;
     }
 
     public static List<Description> getDescriptions(Deposit deposit) {
-        return Descriptions.getDescriptions(deposit.getDdm());
+        return deposit.getDdmMetadata().getDescriptions();
     }
 
     public static List<Contributor> getContributors(Deposit deposit) {
-        return Contributors.getContributors(deposit.getDdm());
+        return deposit.getDdmMetadata().getContributors();
     }
 
     public static LocalDate getPublicationDate(Deposit deposit) {
-        return AvailableDate.getAvailableDate(deposit.getDdm());
+        return deposit.getDdmMetadata().getAvailableDate();
     }
 }
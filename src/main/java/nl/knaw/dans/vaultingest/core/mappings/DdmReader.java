@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Contributor;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetCreator;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetOrganization;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.DdmMetadata;
+import nl.knaw.dans.vaultingest.core.mappings.metadata.Description;
+import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the {@link DdmMetadata} from a DDM document in a single pass over the children of ddm:profile and ddm:dcmiMetadata. The rules are the same as those of the XPath based getters in the
+ * mapping classes (e.g. {@link Titles#getTitle(Document)}), which are kept for the mappings that are not part of the shared metadata.
+ */
+public class DdmReader extends Base implements XmlNamespaces {
+    private static final Set<String> DATED_DESCRIPTIONS = Set.of("date", "dateAccepted", "dateCopyrighted", "dateSubmitted", "modified", "issued", "valid", "coverage");
+
+    public static DdmMetadata read(Document ddm) {
+        var builder = DdmMetadata.builder();
+        var root = ddm.getDocumentElement();
+
+        if (root == null || !isElement(root, NAMESPACE_DDM, "DDM")) {
+            return builder.build();
+        }
+
+        // descriptions come from several places, and are combined in a fixed order afterwards
+        var profileDescriptions = new ArrayList<Description>();
+        var datedDescriptions = new ArrayList<Description>();
+        var dcmiDescriptions = new ArrayList<Description>();
+        var alternativeTitles = new ArrayList<String>();
+        // like the XPath getter, all contributing authors come before all contributing organizations, whatever their order in the document
+        var authorContributors = new ArrayList<Contributor>();
+        var organizationContributors = new ArrayList<Contributor>();
+
+        for (var section : childElements(root)) {
+            if (isElement(section, NAMESPACE_DDM, "profile")) {
+                readProfile(section, builder, profileDescriptions);
+            }
+            else if (isElement(section, NAMESPACE_DDM, "dcmiMetadata")) {
+                readDcmiMetadata(section, datedDescriptions, dcmiDescriptions, alternativeTitles, authorContributors, organizationContributors);
+            }
+        }
+
+        builder.alternativeTitles(alternativeTitles);
+        builder.contributors(authorContributors);
+        builder.contributors(organizationContributors);
+        // CIT009, CIT011, CIT012 and CIT010 (the first alternative title is used for CIT002)
+        builder.descriptions(profileDescriptions);
+        builder.descriptions(datedDescriptions);
+        builder.descriptions(dcmiDescriptions);
+        alternativeTitles.stream().skip(1).forEach(title -> builder.description(Description.builder().value(title).build()));
+
+        return builder.build();
+    }
+
+    private static void readProfile(Element profile, DdmMetadata.DdmMetadataBuilder builder, List<Description> descriptions) {
+        String title = null;
+        String available = null;
+        String accessRights = null;
+
+        for (var element : childElements(profile)) {
+            var namespace = element.getNamespaceURI();
+            var name = element.getLocalName();
+
+            if (isDcOrDcterms(namespace) && "title".equals(name)) {
+                if (title == null) {
+                    title = element.getTextContent().trim();
+                }
+            }
+            else if (isDcOrDcterms(namespace) && "description".equals(name)) {
+                descriptions.add(Description.builder().value(element.getTextContent().trim()).build());
+            }
+            else if (NAMESPACE_DC.equals(namespace) && "creator".equals(name)) {
+                builder.creator(DatasetCreator.builder().name(element.getTextContent().trim()).build());
+            }
+            else if (NAMESPACE_DCX_DAI.equals(namespace) && "creatorDetails".equals(name)) {
+                readCreatorDetails(element, builder);
+            }
+            else if (NAMESPACE_DDM.equals(namespace) && "available".equals(name)) {
+                if (available == null) {
+                    available = element.getTextContent();
+                }
+            }
+            else if (NAMESPACE_DDM.equals(namespace) && "accessRights".equals(name)) {
+                if (accessRights == null) {
+                    accessRights = element.getTextContent().trim();
+                }
+            }
+        }
+
+        builder.title(title);
+        builder.availableDate(available != null ? AvailableDate.toYearMonthDayFormat(available) : null);
+        builder.accessRights(accessRights);
+    }
+
+    private static void readCreatorDetails(Element creatorDetails, DdmMetadata.DdmMetadataBuilder builder) {
+        for (var element : childElements(creatorDetails)) {
+            // CIT006
+            if (isElement(element, NAMESPACE_DCX_DAI, "author")) {
+                builder.author(Authors.parseAuthor(element));
+            }
+            // CIT007
+            else if (isElement(element, NAMESPACE_DCX_DAI, "organization")) {
+                builder.organization(DatasetOrganization.builder()
+                    .name(getFirstValue(element, "dcx-dai:name"))
+                    .isni(getISNI(element))
+                    .viaf(getVIAF(element))
+                    .build());
+            }
+        }
+    }
+
+    private static void readDcmiMetadata(Element dcmiMetadata, List<Description> datedDescriptions, List<Description> descriptions, List<String> alternativeTitles,
+        List<Contributor> authorContributors, List<Contributor> organizationContributors) {
+        for (var element : childElements(dcmiMetadata)) {
+            var namespace = element.getNamespaceURI();
+            var name = element.getLocalName();
+
+            if ((isDcOrDcterms(namespace) && "title".equals(name)) || (NAMESPACE_DCTERMS.equals(namespace) && "alternative".equals(name))) {
+                alternativeTitles.add(element.getTextContent().trim());
+            }
+            else if (DATED_DESCRIPTIONS.contains(name) && (NAMESPACE_DCTERMS.equals(namespace) || (NAMESPACE_DC.equals(namespace) && "date".equals(name)))) {
+                datedDescriptions.add(Description.builder()
+                    .type(name)
+                    .value(element.getTextContent().trim())
+                    .build());
+            }
+            else if (NAMESPACE_DCTERMS.equals(namespace) && "description".equals(name)) {
+                descriptions.add(Description.builder().value(element.getTextContent().trim()).build());
+            }
+            else if (NAMESPACE_DCX_DAI.equals(namespace) && "contributorDetails".equals(name)) {
+                readContributorDetails(element, authorContributors, organizationContributors);
+            }
+        }
+    }
+
+    private static void readContributorDetails(Element contributorDetails, List<Contributor> authorContributors, List<Contributor> organizationContributors) {
+        for (var element : childElements(contributorDetails)) {
+            // CIT020
+            if (isElement(element, NAMESPACE_DCX_DAI, "author") && hasRoleOtherThan(element, "RightsHolder")) {
+                var author = Authors.parseAuthor(element);
+
+                authorContributors.add(Contributor.builder()
+                    .type(author.getRole())
+                    .name(author.getContributorName())
+                    .build());
+            }
+            // CIT021
+            else if (isElement(element, NAMESPACE_DCX_DAI, "organization") && hasRoleOtherThan(element, "RightsHolder") && hasRoleOtherThan(element, "Funder")) {
+                organizationContributors.add(Contributor.builder()
+                    .type(getFirstValue(element, "dcx-dai:role"))
+                    .name(getFirstValue(element, "dcx-dai:name"))
+                    .build());
+            }
+        }
+    }
+
+    // same semantics as the XPath predicate [dcx-dai:role != 'value']: true if there is at least one role with a different value
+    private static boolean hasRoleOtherThan(Element element, String value) {
+        for (var child : childElements(element)) {
+            if (isElement(child, NAMESPACE_DCX_DAI, "role") && !value.equals(child.getTextContent())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isDcOrDcterms(String namespace) {
+        return NAMESPACE_DC.equals(namespace) || NAMESPACE_DCTERMS.equals(namespace);
+    }
+
+    private static boolean isElement(Element element, String namespace, String localName) {
+        return namespace.equals(element.getNamespaceURI()) && localName.equals(element.getLocalName());
+    }
+
+    private static List<Element> childElements(Element parent) {
+        var result = new ArrayList<Element>();
+
+        for (var child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                result.add((Element) child);
+            }
+        }
+
+        return result;
+    }
+}
@@ -31,7 +31,7 @@ import java.util.stream.Stream;
 public class Descriptions extends Base {
 
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
-        return toDescriptions(resource, getDescriptions(deposit.getDdm()));
+        return toDescriptions(resource, deposit.getDdmMetadata().getDescriptions());
     }
 
     static List<Description> getDescriptions(Document document) {
@@ -24,8 +24,8 @@ import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 
 public class Terms extends Base {
@@ -33,34 +33,43 @@ public class Terms extends Base {
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
 
         return toComplexTerms(resource, DVCore.fileTermsOfAccess, List.of(deposit), (element, value) -> {
-            var requestAccess = isRequestAccess(deposit.getDdm(), deposit.getPayloadFiles()) ? "Yes" : "No";
+            // a single pass over the files; the rules below only depend on which values occur
+            var accessibleToRights = getAccessibleToRights(deposit.getPayloadFiles());
+            var requestAccess = isRequestAccess(deposit.getDdm(), accessibleToRights) ? "Yes" : "No";
             element.addProperty(DVCore.fileRequestAccess, requestAccess);
 
             if ("No".equals(requestAccess)) {
-                var terms = getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles());
+                var terms = getTermsOfAccess(deposit.getDdm(), accessibleToRights);
 
                 if (terms != null) {
-                    element.addProperty(DVCore.termsOfAccess, getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles()));
+                    element.addProperty(DVCore.termsOfAccess, terms);
                 }
             }
         });
     }
 
-    // false = no, true = yes
-    static boolean isRequestAccess(Document ddm, Collection<PayloadFile> files) {
-        // TRM002
-        var containsNone = false;
+    static Set<String> getAccessibleToRights(Collection<PayloadFile> files) {
+        var result = new HashSet<String>();
 
         for (var file : files) {
-            var accessibleToRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
+            var accessibleToRights = file.getAccessibleToRights();
 
-            if ("NONE".equals(accessibleToRights)) {
-                containsNone = true;
-                break;
+            if (accessibleToRights != null) {
+                result.add(accessibleToRights);
             }
         }
 
-        if (containsNone) {
+        return result;
+    }
+
+    // false = no, true = yes
+    static boolean isRequestAccess(Document ddm, Collection<PayloadFile> files) {
+        return isRequestAccess(ddm, getAccessibleToRights(files));
+    }
+
+    static boolean isRequestAccess(Document ddm, Set<String> accessibleToRights) {
+        // TRM002
+        if (accessibleToRights.contains("NONE")) {
             return false;
         }
 
@@ -73,17 +82,12 @@ public class Terms extends Base {
     }
 
     static String getTermsOfAccess(Document ddm, Collection<PayloadFile> files) {
-        // TRM005
-        var containsNone = false;
-
-        for (var file : files) {
-            var accessRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
+        return getTermsOfAccess(ddm, getAccessibleToRights(files));
+    }
 
-            if ("NONE".equals(accessRights)) {
-                containsNone = true;
-                break;
-            }
-        }
+    static String getTermsOfAccess(Document ddm, Set<String> accessibleToRights) {
+        // TRM005
+        var containsNone = accessibleToRights.contains("NONE");
 
         var accessRights = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:accessRights")
             .map(String::trim)
@@ -97,12 +101,7 @@ public class Terms extends Base {
         // TRM006
         var knownOrRestrictive = Set.of("RESTRICTED_REQUEST", "KNOWN");
 
-        var accessibleToRights = files.stream()
-            .map(f -> DataFile.getAccessibleToRights(f.getFilesXmlNode()))
-            .filter(Objects::nonNull)
-            .anyMatch(knownOrRestrictive::contains);
-
-        if (accessibleToRights) {
+        if (accessibleToRights.stream().anyMatch(knownOrRestrictive::contains)) {
             return accessRights != null ? accessRights : "";
         }
 
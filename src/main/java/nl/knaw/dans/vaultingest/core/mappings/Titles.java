@@ -28,7 +28,7 @@ import java.util.List;
 public class Titles {
     // CIT001
     public static List<Statement> toRDF(Resource resource, Deposit deposit) {
-        return rdfTitle(resource, getTitle(deposit.getDdm()));
+        return rdfTitle(resource, deposit.getDdmMetadata().getTitle());
     }
 
     static String getTitle(Document ddm) {
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings.metadata;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The dataset metadata from the DDM that is needed by both the DataCite and the OAI-ORE conversion, read in a single pass over the DDM. The lists are in document order.
+ */
+@Value
+@Builder
+public class DdmMetadata {
+    String title;
+    @Singular
+    List<String> alternativeTitles;
+    @Singular
+    List<DatasetCreator> creators;
+    @Singular
+    List<DatasetAuthor> authors;
+    @Singular
+    List<DatasetOrganization> organizations;
+    @Singular
+    List<Description> descriptions;
+    @Singular
+    List<Contributor> contributors;
+    LocalDate availableDate;
+    String accessRights;
+}
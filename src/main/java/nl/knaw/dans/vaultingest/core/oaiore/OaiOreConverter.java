@@ -153,12 +153,12 @@ public class OaiOreConverter {
         return resourceMap;
     }
 
-    Resource createAggregatedResource(Model model, PayloadFile payloadFile) {
+    Resource createAggregatedResource(Model model, PayloadFile payloadFile, String accessRights) {
         var resource = model.createResource("urn:uuid:" + payloadFile.getId());
 
         model.add(model.createStatement(resource, RDF.type, ORE.AggregatedResource));
         model.add(model.createStatement(resource, SchemaDO.name, payloadFile.getPath().toString()));
-        model.add(DataFile.toRDF(resource, payloadFile));
+        model.add(DataFile.toRDF(resource, payloadFile, accessRights));
 
         return resource;
     }
@@ -170,8 +170,10 @@ public class OaiOreConverter {
         model.add(type);
 
         if (deposit.getPayloadFiles() != null) {
+            var accessRights = deposit.getDdmMetadata().getAccessRights();
+
             for (var file : deposit.getPayloadFiles()) {
-                var fileResource = createAggregatedResource(model, file);
+                var fileResource = createAggregatedResource(model, file, accessRights);
 
                 model.add(model.createStatement(
                     resource,
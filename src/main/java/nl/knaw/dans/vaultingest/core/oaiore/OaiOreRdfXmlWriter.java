@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.impl.Util;
+import org.apache.jena.vocabulary.RDF;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes an OAI-ORE model as RDF/XML in a single pass over the model. Unlike Jena's RDF/XML-ABBREV writer, it does not analyse the whole graph to choose abbreviations, but relies on the fixed
+ * structure of the models created by {@link OaiOreConverter}: the resource map, the aggregation and the aggregated resources are written as typed top-level elements, in that order, and blank nodes
+ * that are the object of exactly one statement are nested in the element of that statement. Anything else in the model (other subjects, shared blank nodes) is written as a top-level
+ * rdf:Description afterwards, so the output always describes exactly the same graph.
+ *
+ * Apart from the namespace declarations, the writer keeps no state proportional to the size of the model.
+ */
+class OaiOreRdfXmlWriter {
+    private static final List<Resource> TOP_LEVEL_TYPES = List.of(ORE.ResourceMap, ORE.Aggregation, ORE.AggregatedResource);
+    private static final String INDENT = "  ";
+
+    private final Model model;
+    private final Map<String, String> prefixes = new TreeMap<>();
+    private final Deque<Resource> nestedBlankNodes = new ArrayDeque<>();
+
+    private XMLStreamWriter writer;
+    private int depth;
+
+    OaiOreRdfXmlWriter(Model model) {
+        this.model = model;
+    }
+
+    void write(OutputStream output) throws XMLStreamException {
+        collectNamespaces();
+        writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+
+        writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        newLine();
+        writer.writeStartElement("rdf", "RDF", RDF.getURI());
+        for (var entry : prefixes.entrySet()) {
+            writer.writeNamespace(entry.getValue(), entry.getKey());
+        }
+        depth++;
+
+        for (int i = 0; i < TOP_LEVEL_TYPES.size(); i++) {
+            var type = TOP_LEVEL_TYPES.get(i);
+            var subjects = model.listSubjectsWithProperty(RDF.type, type);
+
+            while (subjects.hasNext()) {
+                var subject = subjects.next();
+
+                if (!hasEarlierTopLevelType(subject, i)) {
+                    writeSubject(subject, type);
+                }
+            }
+        }
+
+        var subjects = model.listSubjects();
+        while (subjects.hasNext()) {
+            var subject = subjects.next();
+
+            if (getTopLevelType(subject) == null && !isNestable(subject)) {
+                writeSubject(subject, null);
+            }
+        }
+
+        depth--;
+        newLine();
+        writer.writeEndElement();
+        newLine();
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    // the namespaces of all predicates and top-level types must be declared on the root element; RDF/XML does not allow full URIs as element names
+    private void collectNamespaces() {
+        prefixes.put(RDF.getURI(), "rdf");
+
+        for (var type : TOP_LEVEL_TYPES) {
+            addNamespace(type.getURI());
+        }
+
+        var predicates = model.listStatements();
+        while (predicates.hasNext()) {
+            addNamespace(predicates.next().getPredicate().getURI());
+        }
+    }
+
+    private void addNamespace(String uri) {
+        var namespace = getNamespace(uri);
+
+        if (!prefixes.containsKey(namespace)) {
+            var prefix = model.getNsURIPrefix(namespace);
+
+            if (prefix == null || prefix.isEmpty() || prefixes.containsValue(prefix)) {
+                prefix = "j." + prefixes.size();
+            }
+
+            prefixes.put(namespace, prefix);
+        }
+    }
+
+    private String getNamespace(String uri) {
+        var split = Util.splitNamespaceXML(uri);
+
+        if (split == uri.length()) {
+            throw new IllegalStateException(String.format("Cannot write URI as an XML element name: %s", uri));
+        }
+
+        return uri.substring(0, split);
+    }
+
+    private boolean hasEarlierTopLevelType(Resource subject, int index) {
+        for (int i = 0; i < index; i++) {
+            if (subject.hasProperty(RDF.type, TOP_LEVEL_TYPES.get(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Resource getTopLevelType(Resource subject) {
+        for (var type : TOP_LEVEL_TYPES) {
+            if (subject.hasProperty(RDF.type, type)) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    // blank nodes that are the object of exactly one statement are written inside the element of that statement, unless they have a top-level type and
+    // are therefore already written as a subject of their own
+    private boolean isNestable(RDFNode node) {
+        if (!node.isAnon() || getTopLevelType(node.asResource()) != null) {
+            return false;
+        }
+
+        var references = model.listStatements(null, null, node);
+        try {
+            if (!references.hasNext()) {
+                return false;
+            }
+            references.next();
+            return !references.hasNext();
+        }
+        finally {
+            references.close();
+        }
+    }
+
+    private void writeSubject(Resource subject, Resource type) throws XMLStreamException {
+        newLine();
+
+        if (type == null) {
+            writeStartElement(RDF.Description.getURI());
+        }
+        else {
+            writeStartElement(type.getURI());
+        }
+        writeSubjectAttribute(subject);
+
+        writeProperties(subject, type);
+
+        newLine();
+        writer.writeEndElement();
+    }
+
+    private void writeSubjectAttribute(Resource subject) throws XMLStreamException {
+        if (subject.isAnon()) {
+            writer.writeAttribute("rdf", RDF.getURI(), "nodeID", getNodeId(subject));
+        }
+        else {
+            writer.writeAttribute("rdf", RDF.getURI(), "about", subject.getURI());
+        }
+    }
+
+    private void writeProperties(Resource subject, Resource typeOfElement) throws XMLStreamException {
+        depth++;
+        var statements = subject.listProperties();
+
+        while (statements.hasNext()) {
+            var statement = statements.next();
+
+            // the type of a typed element is already expressed by the element name
+            if (typeOfElement != null && statement.getPredicate().equals(RDF.type) && statement.getObject().equals(typeOfElement)) {
+                continue;
+            }
+
+            writeProperty(statement);
+        }
+
+        depth--;
+    }
+
+    private void writeProperty(Statement statement) throws XMLStreamException {
+        var predicate = statement.getPredicate();
+        var object = statement.getObject();
+        newLine();
+
+        if (object.isLiteral()) {
+            writeStartElement(predicate);
+            writeLiteral(object.asLiteral());
+            writer.writeEndElement();
+        }
+        else if (isNestable(object)) {
+            var blankNode = object.asResource();
+
+            if (nestedBlankNodes.contains(blankNode)) {
+                throw new IllegalStateException("Cycle of blank nodes in OAI-ORE model");
+            }
+
+            nestedBlankNodes.push(blankNode);
+            writeStartElement(predicate);
+            writer.writeAttribute("rdf", RDF.getURI(), "parseType", "Resource");
+            writeProperties(blankNode, null);
+            newLine();
+            writer.writeEndElement();
+            nestedBlankNodes.pop();
+        }
+        else {
+            writeEmptyElement(predicate);
+            var resource = object.asResource();
+
+            if (resource.isAnon()) {
+                writer.writeAttribute("rdf", RDF.getURI(), "nodeID", getNodeId(resource));
+            }
+            else {
+                writer.writeAttribute("rdf", RDF.getURI(), "resource", resource.getURI());
+            }
+        }
+    }
+
+    private void writeLiteral(Literal literal) throws XMLStreamException {
+        var language = literal.getLanguage();
+        var datatypeUri = literal.getDatatypeURI();
+
+        if (language != null && !language.isEmpty()) {
+            writer.writeAttribute(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, "lang", language);
+        }
+        else if (datatypeUri != null && !datatypeUri.equals(XSDDatatype.XSDstring.getURI())) {
+            writer.writeAttribute("rdf", RDF.getURI(), "datatype", datatypeUri);
+        }
+
+        writer.writeCharacters(literal.getLexicalForm());
+    }
+
+    private void writeStartElement(Property predicate) throws XMLStreamException {
+        writeStartElement(predicate.getURI());
+    }
+
+    private void writeStartElement(String uri) throws XMLStreamException {
+        var namespace = getNamespace(uri);
+        writer.writeStartElement(prefixes.get(namespace), uri.substring(namespace.length()), namespace);
+    }
+
+    private void writeEmptyElement(Property predicate) throws XMLStreamException {
+        var uri = predicate.getURI();
+        var namespace = getNamespace(uri);
+        writer.writeEmptyElement(prefixes.get(namespace), uri.substring(namespace.length()), namespace);
+    }
+
+    private String getNodeId(Resource blankNode) {
+        return "A" + blankNode.getId().getLabelString().replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    private void newLine() throws XMLStreamException {
+        writer.writeCharacters("\n");
+
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters(INDENT);
+        }
+    }
+}
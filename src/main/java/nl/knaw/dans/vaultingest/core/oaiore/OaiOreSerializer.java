@@ -30,10 +30,8 @@ import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.PROV;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.RDFWriter;
-import org.apache.jena.riot.SysRIOT;
 import org.apache.jena.riot.writer.JsonLD10Writer;
 import org.apache.jena.sparql.util.Context;
 import org.apache.jena.sparql.vocabulary.FOAF;
@@ -41,8 +39,10 @@ import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.DC_11;
 import org.apache.jena.vocabulary.SchemaDO;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -58,30 +58,41 @@ public class OaiOreSerializer {
     }
 
     public String serializeAsRdf(Model model) {
-        var topLevelResources = new Resource[] {
-            ORE.AggregatedResource,
-            ORE.Aggregation,
-            ORE.ResourceMap,
-        };
+        var output = new ByteArrayOutputStream();
+        serializeAsRdf(model, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
 
+    /**
+     * Writes the model as UTF-8 encoded RDF/XML to the output stream. The stream is not closed.
+     *
+     * @param model  the OAI-ORE model, as created by {@link OaiOreConverter}
+     * @param output the stream to write to
+     */
+    public void serializeAsRdf(Model model, OutputStream output) {
         applyNamespaces(model);
 
-        var properties = new HashMap<String, Object>();
-        properties.put("prettyTypes", topLevelResources);
-        properties.put("showXmlDeclaration", "true");
+        try {
+            new OaiOreRdfXmlWriter(model).write(output);
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(String.format("Error serializing OAI-ORE model as RDF/XML: %s", e.getMessage()), e);
+        }
+    }
 
+    public String serializeAsJsonLd(Model model) {
         var output = new ByteArrayOutputStream();
-
-        RDFWriter.create()
-            .format(RDFFormat.RDFXML_ABBREV)
-            .set(SysRIOT.sysRdfWriterProperties, properties)
-            .source(model)
-            .output(output);
-
-        return output.toString();
+        serializeAsJsonLd(model, output);
+        return output.toString(StandardCharsets.UTF_8);
     }
 
-    public String serializeAsJsonLd(Model model) {
+    /**
+     * Writes the model as UTF-8 encoded, framed JSON-LD to the output stream. The stream is not closed.
+     *
+     * @param model  the OAI-ORE model, as created by {@link OaiOreConverter}
+     * @param output the stream to write to
+     */
+    public void serializeAsJsonLd(Model model, OutputStream output) {
         var context = new Context();
 
         applyNamespaces(model);
@@ -108,10 +119,7 @@ public class OaiOreSerializer {
             .context(context)
             .build();
 
-        var outputWriter = new StringWriter();
-        writer.output(outputWriter);
-
-        return outputWriter.toString();
+        writer.output(output);
     }
 
     private String namespacesAsJsonObject(Map<String, String> namespaces) {
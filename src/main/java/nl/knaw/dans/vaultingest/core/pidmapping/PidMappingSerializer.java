@@ -15,15 +15,43 @@
  */
 package nl.knaw.dans.vaultingest.core.pidmapping;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
 public class PidMappingSerializer {
 
     public String serialize(PidMappings mappings) {
-        var str = new StringBuilder();
+        var output = new ByteArrayOutputStream();
+        serialize(mappings, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
 
-        for (var mapping : mappings.getPidMappings()) {
-            str.append(String.format("%s %s\n", mapping.getId(), mapping.getPath()));
-        }
+    /**
+     * Writes the mappings as UTF-8 encoded lines to the output stream. The stream is flushed, but not closed.
+     *
+     * @param mappings the mappings to serialize
+     * @param output   the stream to write to
+     */
+    public void serialize(PidMappings mappings, OutputStream output) {
+        try {
+            var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
 
-        return str.toString();
+            for (var mapping : mappings.getPidMappings()) {
+                writer.write(String.valueOf(mapping.getId()));
+                writer.write(' ');
+                writer.write(String.valueOf(mapping.getPath()));
+                writer.write('\n');
+            }
+
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -19,6 +19,8 @@ import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.core.IngestMetrics;
+import nl.knaw.dans.vaultingest.core.IngestStep;
 import nl.knaw.dans.lib.util.ZipUtil;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
@@ -27,13 +29,11 @@ import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
-import nl.knaw.dans.vaultingest.core.util.MultiDigestInputStream;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import nl.knaw.dans.vaultingest.core.util.MultiDigestOutputStream;
+import org.apache.jena.rdf.model.Model;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
@@ -46,7 +46,7 @@ import java.util.Set;
  */
 @Slf4j
 @RequiredArgsConstructor
-public class DansBagToRdaBagEnricher {
+public class DansBagToRdaBagEnricher implements RdaBagWriter {
     @NonNull
     private final Deposit deposit;
 
@@ -68,70 +68,100 @@ public class DansBagToRdaBagEnricher {
     @NonNull
     private final OaiOreConverter oaiOreConverter;
 
+    @NonNull
+    private final IngestMetrics metrics;
+
     private final Map<Path, Map<SupportedAlgorithm, String>> changedChecksums = new HashMap<>();
     private Set<SupportedAlgorithm> tagManifestAlgorithms;
 
-    public void write(Path rdaBag) throws IOException {
+    public DansBagToRdaBagEnricher(Deposit deposit, DataciteSerializer dataciteSerializer, PidMappingSerializer pidMappingSerializer, OaiOreSerializer oaiOreSerializer, DataciteConverter dataciteConverter,
+        PidMappingConverter pidMappingConverter, OaiOreConverter oaiOreConverter) {
+        this(deposit, dataciteSerializer, pidMappingSerializer, oaiOreSerializer, dataciteConverter, pidMappingConverter, oaiOreConverter, IngestMetrics.NONE);
+    }
+
+    @Override
+    public void generateMetadata() throws IOException {
         this.tagManifestAlgorithms = deposit.getBag().getTagManifestAlgorithms();
 
         log.debug("Adding metadata/datacite.xml");
-        var resource = dataciteConverter.convert(deposit);
-        var dataciteXml = dataciteSerializer.serialize(resource);
-        checksummedWriteToOutput(Path.of("metadata/datacite.xml"), dataciteXml);
+        try (var timer = metrics.time(IngestStep.DATACITE, deposit.getId())) {
+            var resource = dataciteConverter.convert(deposit);
+            timer.setBytes(checksummedWriteToOutput(Path.of("metadata/datacite.xml"), output -> dataciteSerializer.serialize(resource, output)));
+        }
 
         log.debug("Adding metadata/oai-ore[.rdf|.jsonld]");
-        var oaiOre = oaiOreConverter.convert(deposit);
-        var rdf = oaiOreSerializer.serializeAsRdf(oaiOre);
-        var jsonld = oaiOreSerializer.serializeAsJsonLd(oaiOre);
-        checksummedWriteToOutput(Path.of("metadata/oai-ore.rdf"), rdf);
-        checksummedWriteToOutput(Path.of("metadata/oai-ore.jsonld"), jsonld);
+        Model oaiOre;
+        try (var timer = metrics.time(IngestStep.OAI_ORE, deposit.getId())) {
+            // the model is converted once and then serialized in both formats
+            oaiOre = oaiOreConverter.convert(deposit);
+        }
+        try (var timer = metrics.time(IngestStep.OAI_ORE_RDF, deposit.getId())) {
+            timer.setBytes(checksummedWriteToOutput(Path.of("metadata/oai-ore.rdf"), output -> oaiOreSerializer.serializeAsRdf(oaiOre, output)));
+        }
+        try (var timer = metrics.time(IngestStep.OAI_ORE_JSONLD, deposit.getId())) {
+            timer.setBytes(checksummedWriteToOutput(Path.of("metadata/oai-ore.jsonld"), output -> oaiOreSerializer.serializeAsJsonLd(oaiOre, output)));
+        }
 
         log.debug("Adding metadata/pid-mapping.txt");
-        var pidMappings = pidMappingConverter.convert(deposit);
-        var pidMappingsSerialized = pidMappingSerializer.serialize(pidMappings);
-        checksummedWriteToOutput(Path.of("metadata/pid-mapping.txt"), pidMappingsSerialized);
+        try (var timer = metrics.time(IngestStep.PID_MAPPING, deposit.getId())) {
+            var pidMappings = pidMappingConverter.convert(deposit);
+            timer.setBytes(checksummedWriteToOutput(Path.of("metadata/pid-mapping.txt"), output -> pidMappingSerializer.serialize(pidMappings, output)));
+        }
 
         // bag-info.txt does not need changing, as no payload files are added or removed
 
         // must be last, because all other files must have been written
         log.debug("Modifying tagmanifest-*.txt files");
-        modifyTagManifests(); // Add checksums for new metadata files
+        try (var timer = metrics.time(IngestStep.TAG_MANIFESTS, deposit.getId())) {
+            modifyTagManifests(); // Add checksums for new metadata files
+        }
+    }
+
+    @Override
+    public boolean isMetadataStoredInDeposit() {
+        return true;
+    }
 
+    @Override
+    public void writeZip(Path rdaBag) throws IOException {
         log.debug("Creating ZIP file");
-        var tempZipFile = rdaBag.resolveSibling(rdaBag.getFileName() + ".tmp");
+        var tempZipFile = RdaBagWriter.getTempZipFile(rdaBag);
         ZipUtil.zipDirectory(deposit.getBagDir(), tempZipFile, true);
         Files.move(tempZipFile, rdaBag);
     }
 
     private void modifyTagManifests() throws IOException {
+        var appender = new TagManifestAppender();
+
         for (var algorithm : tagManifestAlgorithms) {
-            var tagManifest = deposit.getBag().getTagManifest(algorithm);
-            var fileToChecksum = tagManifest.getFileToChecksumMap();
+            var fileToChecksum = new HashMap<Path, String>();
 
             for (var entry : changedChecksums.entrySet()) {
-                var path = deposit.getBagDir().resolve(entry.getKey());
-                var checksums = entry.getValue();
-                var checksum = checksums.get(algorithm);
+                var checksum = entry.getValue().get(algorithm);
                 if (checksum != null) {
-                    fileToChecksum.put(path, checksum);
+                    fileToChecksum.put(entry.getKey(), checksum);
                 }
             }
-            tagManifest.setFileToChecksumMap(fileToChecksum);
+
+            appender.patch(deposit.getBagDir().resolve(TagManifestAppender.getTagManifestFileName(algorithm)), deposit.getBagDir(), fileToChecksum);
         }
-        deposit.getBag().writeTagManifests();
     }
 
-    private void checksummedWriteToOutput(Path path, String content) throws IOException {
-        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), tagManifestAlgorithms)) {
-            try (var outputStream = FileUtils.openOutputStream(deposit.getBagDir().resolve(path).toFile())) {
-                IOUtils.copy(input, outputStream);
-                var result = input.getChecksums();
-                log.debug("Checksums for {}: {}", path, result);
-                changedChecksums.put(path, result);
-            }
+    // the content is digested while it is written, so it is never held in memory as a whole
+    private long checksummedWriteToOutput(Path path, MetadataContent content) throws IOException {
+        var file = deposit.getBagDir().resolve(path);
+        Files.createDirectories(file.getParent());
+
+        try (var output = new MultiDigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), tagManifestAlgorithms)) {
+            content.writeTo(output);
+            output.flush();
+            var result = output.getChecksums();
+            log.debug("Checksums for {}: {}", path, result);
+            changedChecksums.put(path, result);
         }
         catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("Algorithm not supported", e);
         }
+        return Files.size(file);
     }
 }
@@ -16,6 +16,7 @@
 package nl.knaw.dans.vaultingest.core.rdabag;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.IngestMetrics;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
 import nl.knaw.dans.vaultingest.core.deposit.CountryResolver;
@@ -36,16 +37,42 @@ public class DefaultRdaBagWriterFactory {
     private final PidMappingConverter pidMappingConverter;
     private final OaiOreConverter oaiOreConverter;
 
+    private final RdaBagWriterMode mode;
+    private final IngestMetrics metrics;
+
     public DefaultRdaBagWriterFactory(ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver) {
+        this(objectMapper, languageResolver, countryResolver, RdaBagWriterMode.IN_PLACE);
+    }
+
+    public DefaultRdaBagWriterFactory(ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver, RdaBagWriterMode mode) {
+        this(objectMapper, languageResolver, countryResolver, mode, IngestMetrics.NONE);
+    }
+
+    public DefaultRdaBagWriterFactory(ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver, RdaBagWriterMode mode, IngestMetrics metrics) {
         this.dataciteSerializer = new DataciteSerializer();
         this.pidMappingSerializer = new PidMappingSerializer();
         this.oaiOreSerializer = new OaiOreSerializer(objectMapper);
         this.dataciteConverter = new DataciteConverter();
         this.pidMappingConverter = new PidMappingConverter();
         this.oaiOreConverter = new OaiOreConverter(languageResolver, countryResolver);
+        this.mode = mode;
+        this.metrics = metrics;
     }
 
-    public DansBagToRdaBagEnricher createRdaBagWriter(Deposit deposit) {
+    public RdaBagWriter createRdaBagWriter(Deposit deposit) {
+        if (mode == RdaBagWriterMode.STREAMING) {
+            return new StreamingRdaBagWriter(
+                deposit,
+                dataciteSerializer,
+                pidMappingSerializer,
+                oaiOreSerializer,
+                dataciteConverter,
+                pidMappingConverter,
+                oaiOreConverter,
+                metrics
+            );
+        }
+
         return new DansBagToRdaBagEnricher(
             deposit,
             dataciteSerializer,
@@ -53,7 +80,8 @@ public class DefaultRdaBagWriterFactory {
             oaiOreSerializer,
             dataciteConverter,
             pidMappingConverter,
-            oaiOreConverter
+            oaiOreConverter,
+            metrics
         );
     }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a deposit as a zipped RDA compliant bag.
+ */
+public interface RdaBagWriter {
+
+    /**
+     * Generates the metadata files of the RDA bag. This is the CPU bound part of writing the bag.
+     *
+     * @throws IOException if the metadata could not be generated
+     */
+    void generateMetadata() throws IOException;
+
+    /**
+     * Returns the file that the ZIP file is written to before it is moved into place. Because of that move, a ZIP file at the final path is always complete.
+     *
+     * @param rdaBag the ZIP file
+     * @return the temporary file next to it
+     */
+    static Path getTempZipFile(Path rdaBag) {
+        return rdaBag.resolveSibling(rdaBag.getFileName() + ".tmp");
+    }
+
+    /**
+     * Writes the ZIP file. This is the disk bound part of writing the bag; {@link #generateMetadata()} must have been called first. The ZIP file is written to {@link #getTempZipFile(Path)} and then
+     * moved to rdaBag.
+     *
+     * @param rdaBag the ZIP file to write
+     * @throws IOException if the ZIP file could not be written
+     */
+    void writeZip(Path rdaBag) throws IOException;
+
+    /**
+     * Whether the metadata generated by {@link #generateMetadata()} is stored in the deposit itself, so that after a restart {@link #writeZip(Path)} can be called on a new writer without
+     * generating the metadata again.
+     *
+     * @return true if the generated metadata survives a restart
+     */
+    default boolean isMetadataStoredInDeposit() {
+        return false;
+    }
+
+    default void write(Path rdaBag) throws IOException {
+        generateMetadata();
+        writeZip(rdaBag);
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+public enum RdaBagWriterMode {
+    /**
+     * Adds the metadata files to the bag directory of the deposit, updates the tag manifests and then zips the bag directory.
+     */
+    IN_PLACE,
+    /**
+     * Writes the ZIP file in a single pass, reading every file of the deposit exactly once. The deposit itself is not modified.
+     */
+    STREAMING
+}
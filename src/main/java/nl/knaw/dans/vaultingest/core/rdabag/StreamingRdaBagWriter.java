@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.core.IngestMetrics;
+import nl.knaw.dans.vaultingest.core.IngestStep;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.PayloadFile;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
+import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
+import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
+import nl.knaw.dans.vaultingest.core.util.MultiDigestOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.rdf.model.Model;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the RDA bag for a deposit directly to a ZIP file. Payload and tag files are streamed from the deposit into the ZIP file. The new metadata files are spooled to temporary files while
+ * they are digested and copied into the ZIP file from there, and the tag manifests are patched while they are copied. Each byte of the deposit is read exactly once, and the deposit itself is
+ * left untouched.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class StreamingRdaBagWriter implements RdaBagWriter {
+    @NonNull
+    private final Deposit deposit;
+
+    @NonNull
+    private final DataciteSerializer dataciteSerializer;
+
+    @NonNull
+    private final PidMappingSerializer pidMappingSerializer;
+
+    @NonNull
+    private final OaiOreSerializer oaiOreSerializer;
+
+    @NonNull
+    private final DataciteConverter dataciteConverter;
+
+    @NonNull
+    private final PidMappingConverter pidMappingConverter;
+
+    @NonNull
+    private final OaiOreConverter oaiOreConverter;
+
+    @NonNull
+    private final IngestMetrics metrics;
+
+    // the path of each metadata file in the bag, and the temporary file it is spooled to
+    private final Map<Path, Path> metadataFiles = new LinkedHashMap<>();
+    private final Map<Path, Map<SupportedAlgorithm, String>> changedChecksums = new HashMap<>();
+    private Set<SupportedAlgorithm> tagManifestAlgorithms;
+
+    public StreamingRdaBagWriter(Deposit deposit, DataciteSerializer dataciteSerializer, PidMappingSerializer pidMappingSerializer, OaiOreSerializer oaiOreSerializer, DataciteConverter dataciteConverter,
+        PidMappingConverter pidMappingConverter, OaiOreConverter oaiOreConverter) {
+        this(deposit, dataciteSerializer, pidMappingSerializer, oaiOreSerializer, dataciteConverter, pidMappingConverter, oaiOreConverter, IngestMetrics.NONE);
+    }
+
+    @Override
+    public void generateMetadata() throws IOException {
+        this.tagManifestAlgorithms = deposit.getBag().getTagManifestAlgorithms();
+
+        try {
+            generateMetadataFiles();
+        }
+        catch (IOException | RuntimeException e) {
+            deleteMetadataFiles();
+            throw e;
+        }
+    }
+
+    private void generateMetadataFiles() throws IOException {
+        log.debug("Generating metadata/datacite.xml");
+        try (var timer = metrics.time(IngestStep.DATACITE, deposit.getId())) {
+            var resource = dataciteConverter.convert(deposit);
+            timer.setBytes(checksummedAddMetadataFile(Path.of("metadata/datacite.xml"), output -> dataciteSerializer.serialize(resource, output)));
+        }
+
+        log.debug("Generating metadata/oai-ore[.rdf|.jsonld]");
+        Model oaiOre;
+        try (var timer = metrics.time(IngestStep.OAI_ORE, deposit.getId())) {
+            // the model is converted once and then serialized in both formats
+            oaiOre = oaiOreConverter.convert(deposit);
+        }
+        try (var timer = metrics.time(IngestStep.OAI_ORE_RDF, deposit.getId())) {
+            timer.setBytes(checksummedAddMetadataFile(Path.of("metadata/oai-ore.rdf"), output -> oaiOreSerializer.serializeAsRdf(oaiOre, output)));
+        }
+        try (var timer = metrics.time(IngestStep.OAI_ORE_JSONLD, deposit.getId())) {
+            timer.setBytes(checksummedAddMetadataFile(Path.of("metadata/oai-ore.jsonld"), output -> oaiOreSerializer.serializeAsJsonLd(oaiOre, output)));
+        }
+
+        log.debug("Generating metadata/pid-mapping.txt");
+        try (var timer = metrics.time(IngestStep.PID_MAPPING, deposit.getId())) {
+            var pidMappings = pidMappingConverter.convert(deposit);
+            timer.setBytes(checksummedAddMetadataFile(Path.of("metadata/pid-mapping.txt"), output -> pidMappingSerializer.serialize(pidMappings, output)));
+        }
+    }
+
+    @Override
+    public void writeZip(Path rdaBag) throws IOException {
+        log.debug("Streaming bag to ZIP file");
+        var tempZipFile = RdaBagWriter.getTempZipFile(rdaBag);
+        try {
+            try (var zip = new ZipArchiveOutputStream(tempZipFile.toFile())) {
+                writeBagFiles(zip);
+                writeMetadataFiles(zip);
+                try (var timer = metrics.time(IngestStep.TAG_MANIFESTS, deposit.getId())) {
+                    writeTagManifests(zip); // must be last, because the checksums of all metadata files must be known
+                }
+            }
+            Files.move(tempZipFile, rdaBag);
+        }
+        finally {
+            deleteMetadataFiles();
+        }
+    }
+
+    // the metadata files must be kept until the ZIP file is written; they are spooled to temporary files while they are digested, so that they are not kept in memory in the meantime
+    private long checksummedAddMetadataFile(Path path, MetadataContent content) throws IOException {
+        var spoolFile = Files.createTempFile("rda-bag-", "-" + path.getFileName());
+        metadataFiles.put(path, spoolFile);
+
+        try (var output = new MultiDigestOutputStream(new BufferedOutputStream(Files.newOutputStream(spoolFile)), tagManifestAlgorithms)) {
+            content.writeTo(output);
+            var result = output.getChecksums();
+            log.debug("Checksums for {}: {}", path, result);
+            changedChecksums.put(path, result);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Algorithm not supported", e);
+        }
+        return Files.size(spoolFile);
+    }
+
+    private void deleteMetadataFiles() {
+        for (var spoolFile : metadataFiles.values()) {
+            try {
+                Files.deleteIfExists(spoolFile);
+            }
+            catch (IOException e) {
+                log.warn("Could not delete temporary metadata file {}", spoolFile, e);
+            }
+        }
+    }
+
+    private void writeBagFiles(ZipArchiveOutputStream zip) throws IOException {
+        var bagDir = deposit.getBagDir();
+        var payloadFiles = deposit.getPayloadFiles().stream()
+            .collect(Collectors.toMap(f -> f.getPhysicalPath().normalize(), Function.identity(), (a, b) -> a));
+
+        try (var paths = Files.walk(bagDir)) {
+            for (var path : (Iterable<Path>) paths::iterator) {
+                var relativePath = bagDir.relativize(path);
+
+                if (Files.isDirectory(path)) {
+                    zip.putArchiveEntry(new ZipArchiveEntry(path.toFile(), getEntryName(relativePath)));
+                    zip.closeArchiveEntry();
+                }
+                else if (!metadataFiles.containsKey(relativePath) && !isTagManifest(relativePath)) {
+                    try (var input = openInputStream(path, payloadFiles.get(path.normalize()))) {
+                        zip.putArchiveEntry(new ZipArchiveEntry(path.toFile(), getEntryName(relativePath)));
+                        IOUtils.copy(input, zip);
+                        zip.closeArchiveEntry();
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeMetadataFiles(ZipArchiveOutputStream zip) throws IOException {
+        for (var entry : metadataFiles.entrySet()) {
+            log.debug("Adding {}", entry.getKey());
+            writeEntry(zip, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void writeTagManifests(ZipArchiveOutputStream zip) throws IOException {
+        var bagDir = deposit.getBagDir();
+        var appender = new TagManifestAppender();
+
+        for (var algorithm : tagManifestAlgorithms) {
+            var fileToChecksum = new HashMap<Path, String>();
+
+            for (var entry : changedChecksums.entrySet()) {
+                var checksum = entry.getValue().get(algorithm);
+                if (checksum != null) {
+                    fileToChecksum.put(entry.getKey(), checksum);
+                }
+            }
+
+            var tagManifest = Path.of(TagManifestAppender.getTagManifestFileName(algorithm));
+            log.debug("Adding {}", tagManifest);
+
+            try (var input = Files.newInputStream(bagDir.resolve(tagManifest))) {
+                zip.putArchiveEntry(new ZipArchiveEntry(getEntryName(tagManifest)));
+                appender.patch(input, zip, bagDir, fileToChecksum);
+                zip.closeArchiveEntry();
+            }
+        }
+    }
+
+    private void writeEntry(ZipArchiveOutputStream zip, Path relativePath, Path spoolFile) throws IOException {
+        var entry = new ZipArchiveEntry(getEntryName(relativePath));
+        entry.setSize(Files.size(spoolFile));
+        zip.putArchiveEntry(entry);
+        Files.copy(spoolFile, zip);
+        zip.closeArchiveEntry();
+    }
+
+    private InputStream openInputStream(Path path, PayloadFile payloadFile) throws IOException {
+        if (payloadFile != null) {
+            return payloadFile.openInputStream();
+        }
+
+        return Files.newInputStream(path);
+    }
+
+    private boolean isTagManifest(Path relativePath) {
+        var name = relativePath.toString();
+        return relativePath.getNameCount() == 1 && name.startsWith("tagmanifest-") && name.endsWith(".txt");
+    }
+
+    private String getEntryName(Path relativePath) {
+        // the bag directory itself is the single top-level directory in the ZIP file
+        var entryName = new StringBuilder(deposit.getBagDir().getFileName().toString());
+
+        for (var name : relativePath) {
+            if (!name.toString().isEmpty()) {
+                entryName.append('/').append(name);
+            }
+        }
+
+        return entryName.toString();
+    }
+}
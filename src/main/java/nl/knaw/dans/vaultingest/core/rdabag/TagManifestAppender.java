@@ -15,16 +15,118 @@
  */
 package nl.knaw.dans.vaultingest.core.rdabag;
 
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+import lombok.AllArgsConstructor;
 import nl.knaw.dans.vaultingest.core.util.BagItFilePathEncoding;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Patches tag manifests incrementally. Only the lines for the given files are replaced or appended; all other lines are copied as they are, so that a large tag manifest never has to be read into
+ * memory as a whole.
+ */
 public class TagManifestAppender {
 
+    public static String getTagManifestFileName(SupportedAlgorithm algorithm) {
+        return String.format("tagmanifest-%s.txt", algorithm.getBagitName());
+    }
+
     public String appendNewEntries(Path rootDir, Map<Path, String> checksums) {
         var outputString = new StringBuilder();
 
+        for (var entry : encodeEntries(rootDir, checksums).entrySet()) {
+            outputString.append(formatLine(entry.getValue(), entry.getKey()));
+        }
+
+        return outputString.toString();
+    }
+
+    /**
+     * Patches the tag manifest file. The patched manifest is written to a temporary file, which then replaces the manifest in an atomic move, so that a crash never leaves a partly patched manifest
+     * in the bag.
+     *
+     * @param tagManifest the tag manifest file to patch
+     * @param rootDir     the root directory of the bag
+     * @param checksums   the new checksums, keyed by path relative to the root directory or absolute path inside it
+     * @throws IOException if the manifest could not be read or written
+     */
+    public void patch(Path tagManifest, Path rootDir, Map<Path, String> checksums) throws IOException {
+        var tempFile = tagManifest.resolveSibling(tagManifest.getFileName() + ".tmp");
+
+        try (var input = Files.newInputStream(tagManifest);
+            var channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            patch(input, Channels.newOutputStream(channel), encodeEntries(rootDir, checksums));
+            channel.force(false);
+        }
+
+        Files.move(tempFile, tagManifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies a tag manifest to the output, replacing the lines for the given files and appending the lines for files that were not in the manifest yet.
+     *
+     * @param tagManifest the existing tag manifest
+     * @param output      the output to write the patched manifest to; it is not closed
+     * @param rootDir     the root directory of the bag
+     * @param checksums   the new checksums, keyed by path relative to the root directory or absolute path inside it
+     * @throws IOException if the manifest could not be read or the output could not be written
+     */
+    public void patch(InputStream tagManifest, OutputStream output, Path rootDir, Map<Path, String> checksums) throws IOException {
+        patch(tagManifest, output, encodeEntries(rootDir, checksums));
+    }
+
+    private void patch(InputStream tagManifest, OutputStream output, Map<String, String> entries) throws IOException {
+        var remaining = new LinkedHashMap<>(entries);
+        var lines = new LineReader(tagManifest);
+        var out = new BufferedOutputStream(output);
+        var endsWithNewline = true;
+        byte[] line;
+
+        while ((line = lines.readLine()) != null) {
+            endsWithNewline = line[line.length - 1] == '\n';
+            copyOrReplaceLine(line, out, remaining);
+        }
+
+        if (!endsWithNewline && !remaining.isEmpty()) {
+            out.write('\n');
+        }
+
+        for (var entry : remaining.entrySet()) {
+            out.write(formatLine(entry.getValue(), entry.getKey()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        out.flush();
+    }
+
+    private void copyOrReplaceLine(byte[] line, OutputStream out, Map<String, String> remaining) throws IOException {
+        var parsed = ManifestLine.parse(line);
+        var checksum = parsed != null ? remaining.remove(parsed.path) : null;
+
+        if (checksum != null) {
+            out.write(formatLine(checksum, parsed.path).getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+            out.write(line);
+        }
+    }
+
+    private Map<String, String> encodeEntries(Path rootDir, Map<Path, String> checksums) {
+        var result = new LinkedHashMap<String, String>();
+
         for (var entry : checksums.entrySet()) {
             var path = entry.getKey();
 
@@ -36,12 +138,109 @@ public class TagManifestAppender {
             }
 
             var relativePath = rootDir.relativize(path);
-            var safeFilename = BagItFilePathEncoding.encodeFilePath(relativePath);
+            result.put(BagItFilePathEncoding.encodeFilePath(relativePath), entry.getValue());
+        }
+
+        return result;
+    }
+
+    private String formatLine(String checksum, String encodedPath) {
+        return String.format("%s  %s\n", checksum, encodedPath);
+    }
+
+    /**
+     * Reads the lines of a manifest as bytes, including their line terminators, so that lines that are not patched are copied exactly. The input is read in blocks.
+     */
+    private static class LineReader {
+        private final InputStream input;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
 
-            outputString.append(String.format("%s  %s\n", entry.getValue(), safeFilename));
+        LineReader(InputStream input) {
+            this.input = input;
         }
 
-        return outputString.toString();
+        /**
+         * @return the next line, including its line terminator if it has one, or null at the end of the input
+         */
+        byte[] readLine() throws IOException {
+            ByteArrayOutputStream line = null;
+
+            while (true) {
+                if (position == limit) {
+                    limit = input.read(buffer);
+                    position = 0;
+
+                    if (limit <= 0) {
+                        limit = 0;
+                        return line == null ? null : line.toByteArray();
+                    }
+                }
+
+                var start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+
+                var foundNewline = position < limit;
+                if (foundNewline) {
+                    position++;
+                }
+
+                if (line == null && foundNewline) {
+                    // the common case: the whole line is in the buffer
+                    return Arrays.copyOfRange(buffer, start, position);
+                }
+
+                if (line == null) {
+                    line = new ByteArrayOutputStream();
+                }
+                line.write(buffer, start, position - start);
+
+                if (foundNewline) {
+                    return line.toByteArray();
+                }
+            }
+        }
     }
 
+    @AllArgsConstructor
+    private static class ManifestLine {
+        private final String path;
+
+        /**
+         * Parses a line of the form "checksum whitespace path".
+         *
+         * @param line the bytes of the line, including the line terminator
+         * @return the parsed line, or null if the line is not a manifest entry
+         */
+        static ManifestLine parse(byte[] line) {
+            var end = line.length;
+            while (end > 0 && (line[end - 1] == '\n' || line[end - 1] == '\r')) {
+                end--;
+            }
+
+            var checksumEnd = 0;
+            while (checksumEnd < end && !isWhitespace(line[checksumEnd])) {
+                checksumEnd++;
+            }
+
+            var pathStart = checksumEnd;
+            while (pathStart < end && isWhitespace(line[pathStart])) {
+                pathStart++;
+            }
+
+            if (checksumEnd == 0 || pathStart == end) {
+                return null;
+            }
+
+            var path = new String(line, pathStart, end - pathStart, StandardCharsets.UTF_8);
+            return new ManifestLine(path);
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
 }
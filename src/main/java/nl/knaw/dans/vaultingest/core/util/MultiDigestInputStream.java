@@ -19,68 +19,56 @@ import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Computes the checksums of everything that is read through it. The checksums must be retrieved before the stream is closed.
+ */
 public class MultiDigestInputStream extends InputStream {
     private final InputStream inputStream;
-    private final Map<SupportedAlgorithm, DigestInputStream> digestInputStreams;
+    private final MultiDigester digester;
 
     public MultiDigestInputStream(InputStream inputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
-        this.digestInputStreams = new HashMap<>();
-
-        var input = inputStream;
-
-        for (var alg : algorithms) {
-            var digestInputStream = new DigestInputStream(input, MessageDigest.getInstance(alg.getMessageDigestName()));
-            digestInputStreams.put(alg, digestInputStream);
-            input = digestInputStream;
-        }
-
-        this.inputStream = input;
+        this.inputStream = inputStream;
+        this.digester = new MultiDigester(algorithms);
     }
 
     public Map<SupportedAlgorithm, String> getChecksums() {
-        var result = new HashMap<SupportedAlgorithm, String>();
-
-        for (var entry : digestInputStreams.entrySet()) {
-            result.put(entry.getKey(), bytesToHex(entry.getValue().getMessageDigest().digest()));
-        }
-
-        return result;
-    }
-
-    private String bytesToHex(byte[] digest) {
-        var sb = new StringBuilder();
-        for (var b : digest) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        return digester.digest();
     }
 
     @Override
     public int read() throws IOException {
-        return this.inputStream.read();
+        var b = this.inputStream.read();
+
+        if (b >= 0) {
+            digester.update(b);
+        }
+
+        return b;
     }
 
     @Override
-    // Overriding this method has significant performance benefits for the DigestInputStream
+    // Overriding this method has significant performance benefits, as the digester then receives whole blocks
     public int read(byte[] b, int off, int len) throws IOException {
-        return this.inputStream.read(b, off, len);
+        var n = this.inputStream.read(b, off, len);
+
+        if (n > 0) {
+            digester.update(b, off, n);
+        }
+
+        return n;
     }
 
     @Override
     public void close() throws IOException {
-        super.close();
-
-        this.inputStream.close();
-
-        for (var value : digestInputStreams.values()) {
-            value.close();
+        try {
+            this.inputStream.close();
+        }
+        finally {
+            digester.close();
         }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Computes the checksums of everything that is written through it, so that a file can be written and digested in one pass. The checksums must be retrieved before the stream is closed.
+ */
+public class MultiDigestOutputStream extends OutputStream {
+    private final OutputStream outputStream;
+    private final MultiDigester digester;
+
+    public MultiDigestOutputStream(OutputStream outputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        this.outputStream = outputStream;
+        this.digester = new MultiDigester(algorithms);
+    }
+
+    public Map<SupportedAlgorithm, String> getChecksums() {
+        return digester.digest();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        outputStream.write(b);
+        digester.update(b);
+    }
+
+    @Override
+    // Overriding this method has significant performance benefits, as the digester then receives whole blocks
+    public void write(byte[] b, int off, int len) throws IOException {
+        outputStream.write(b, off, len);
+        digester.update(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            outputStream.close();
+        }
+        finally {
+            digester.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes digests for several algorithms in one pass over the input: every chunk that is supplied is passed to the message digest of each algorithm in turn. After {@link #digest()} or
+ * {@link #close()}, no more input is accepted. Instances are not thread-safe.
+ */
+public class MultiDigester implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<SupportedAlgorithm, MessageDigest> messageDigests = new LinkedHashMap<>();
+    private Map<SupportedAlgorithm, String> result;
+    private boolean closed;
+
+    public MultiDigester(Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        for (var algorithm : algorithms) {
+            messageDigests.put(algorithm, MessageDigest.getInstance(algorithm.getMessageDigestName()));
+        }
+    }
+
+    /**
+     * Computes the digests of a file, reading it exactly once.
+     *
+     * @param file       the file to digest
+     * @param algorithms the algorithms to compute
+     * @return the hex encoded digests per algorithm
+     * @throws IOException              if the file could not be read
+     * @throws NoSuchAlgorithmException if one of the algorithms is not available
+     */
+    public static Map<SupportedAlgorithm, String> digest(Path file, Collection<SupportedAlgorithm> algorithms) throws IOException, NoSuchAlgorithmException {
+        try (var digester = new MultiDigester(algorithms); var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            digester.update(channel);
+            return digester.digest();
+        }
+    }
+
+    public void update(int b) {
+        checkOpen();
+
+        for (var messageDigest : messageDigests.values()) {
+            messageDigest.update((byte) b);
+        }
+    }
+
+    public void update(byte[] b, int off, int len) {
+        checkOpen();
+
+        for (var messageDigest : messageDigests.values()) {
+            messageDigest.update(b, off, len);
+        }
+    }
+
+    /**
+     * Reads the channel until end-of-stream.
+     *
+     * @param channel the channel to read
+     * @throws IOException if the channel could not be read
+     */
+    public void update(ReadableByteChannel channel) throws IOException {
+        checkOpen();
+
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            for (var messageDigest : messageDigests.values()) {
+                buffer.rewind();
+                messageDigest.update(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Completes the digests. Calling this again returns the same digests.
+     *
+     * @return the hex encoded digests per algorithm
+     */
+    public Map<SupportedAlgorithm, String> digest() {
+        if (result == null) {
+            checkOpen();
+
+            var hexFormat = HexFormat.of();
+            var digests = new HashMap<SupportedAlgorithm, String>();
+            for (var entry : messageDigests.entrySet()) {
+                digests.put(entry.getKey(), hexFormat.formatHex(entry.getValue().digest()));
+            }
+            result = digests;
+            closed = true;
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Digester is closed or its digests have already been computed");
+        }
+    }
+}
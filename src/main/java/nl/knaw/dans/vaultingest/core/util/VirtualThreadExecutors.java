@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors that start a new virtual thread for each task. Virtual threads are only available from Java 21 on; they are looked up reflectively so that the application still runs on older
+ * runtimes. Callers must check {@link #isSupported()} and choose a bounded executor themselves if virtual threads are not available: a platform thread per task is not a safe substitute.
+ */
+@Slf4j
+public class VirtualThreadExecutors {
+
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task.
+     *
+     * @param namePrefix the prefix of the thread names
+     * @param purpose    what the threads are used for, for the log
+     * @return the executor
+     * @throws IllegalStateException if virtual threads are not supported by this Java runtime
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix, String purpose) {
+        try {
+            // the methods are looked up on the public Thread.Builder interface, as the implementing classes are not accessible
+            var builderClass = Class.forName("java.lang.Thread$Builder");
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            var threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            log.info("Using virtual threads for {}", purpose);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not supported by this Java runtime (" + Runtime.version() + ")", e);
+        }
+    }
+}
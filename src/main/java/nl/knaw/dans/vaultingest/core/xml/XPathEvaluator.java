@@ -22,58 +22,93 @@ import org.w3c.dom.NodeList;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public final class XPathEvaluator implements XmlNamespaces {
 
-    private static XPath xpath;
-
-    private static XPath getXpath() {
-        if (xpath == null) {
-            xpath = XPathFactory
-                .newInstance()
-                .newXPath();
-
-            final var namespaceMap = new HashMap<String, String>();
-            namespaceMap.put("xml", NAMESPACE_XML);
-            namespaceMap.put("dc", NAMESPACE_DC);
-            namespaceMap.put("dcx-dai", NAMESPACE_DCX_DAI);
-            namespaceMap.put("ddm", NAMESPACE_DDM);
-            namespaceMap.put("dcterms", NAMESPACE_DCTERMS);
-            namespaceMap.put("xsi", NAMESPACE_XSI);
-            namespaceMap.put("id-type", NAMESPACE_ID_TYPE);
-            namespaceMap.put("dcx-gml", NAMESPACE_DCX_GML);
-            namespaceMap.put("files", NAMESPACE_FILES_XML);
-            namespaceMap.put("gml", NAMESPACE_OPEN_GIS);
-            namespaceMap.put("wfs", NAMESPACE_EASY_WORKFLOW);
-            namespaceMap.put("damd", NAMESPACE_DAMD);
-            namespaceMap.put("agreements", NAMESPACE_AGREEMENTS);
-            namespaceMap.put("afm", NAMESPACE_AFM);
-            namespaceMap.put("datacite", NAMESPACE_DATACITE);
-
-            xpath.setNamespaceContext(new NamespaceContext() {
-
-                @Override
-                public String getNamespaceURI(String s) {
-                    return namespaceMap.get(s);
-                }
-
-                @Override
-                public String getPrefix(String s) {
-                    return null;
-                }
-
-                @Override
-                public Iterator<String> getPrefixes(String s) {
-                    return null;
-                }
-            });
+    private static final int MAX_CACHED_EXPRESSIONS = 1024;
+    static final int MAX_POOLED_COMPILERS = 64;
+
+    // XPath and XPathExpression objects are not thread-safe. Instead of locking, each evaluation borrows a compiler from this pool and returns it afterwards. A pool rather than a ThreadLocal is
+    // used, because with virtual threads each deposit would get a new thread and thus an empty cache. The pool is used as a stack, so that the compiler with the warmest cache is borrowed first, and
+    // at most MAX_POOLED_COMPILERS are kept; compilers created during a burst of concurrent evaluations beyond that are discarded.
+    private static final ConcurrentLinkedDeque<Compiler> compilers = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger pooledCompilers = new AtomicInteger();
+    private static final AtomicLong compilations = new AtomicLong();
+
+    private static class Compiler {
+        private final XPath xpath = createXpath();
+        private final Map<String, XPathExpression> compiledExpressions = new LinkedHashMap<>(64, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > MAX_CACHED_EXPRESSIONS;
+            }
+        };
+
+        private XPathExpression compile(String expr) throws XPathExpressionException {
+            var expression = compiledExpressions.get(expr);
+
+            if (expression == null) {
+                expression = xpath.compile(expr);
+                compiledExpressions.put(expr, expression);
+                compilations.incrementAndGet();
+            }
+
+            return expression;
         }
+    }
+
+    private static XPath createXpath() {
+        var xpath = XPathFactory
+            .newInstance()
+            .newXPath();
+
+        final var namespaceMap = new HashMap<String, String>();
+        namespaceMap.put("xml", NAMESPACE_XML);
+        namespaceMap.put("dc", NAMESPACE_DC);
+        namespaceMap.put("dcx-dai", NAMESPACE_DCX_DAI);
+        namespaceMap.put("ddm", NAMESPACE_DDM);
+        namespaceMap.put("dcterms", NAMESPACE_DCTERMS);
+        namespaceMap.put("xsi", NAMESPACE_XSI);
+        namespaceMap.put("id-type", NAMESPACE_ID_TYPE);
+        namespaceMap.put("dcx-gml", NAMESPACE_DCX_GML);
+        namespaceMap.put("files", NAMESPACE_FILES_XML);
+        namespaceMap.put("gml", NAMESPACE_OPEN_GIS);
+        namespaceMap.put("wfs", NAMESPACE_EASY_WORKFLOW);
+        namespaceMap.put("damd", NAMESPACE_DAMD);
+        namespaceMap.put("agreements", NAMESPACE_AGREEMENTS);
+        namespaceMap.put("afm", NAMESPACE_AFM);
+        namespaceMap.put("datacite", NAMESPACE_DATACITE);
+
+        xpath.setNamespaceContext(new NamespaceContext() {
+
+            @Override
+            public String getNamespaceURI(String s) {
+                return namespaceMap.get(s);
+            }
+
+            @Override
+            public String getPrefix(String s) {
+                return null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(String s) {
+                return null;
+            }
+        });
 
         return xpath;
     }
@@ -98,8 +133,43 @@ public final class XPathEvaluator implements XmlNamespaces {
         }
     }
 
-    private static synchronized Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
-        return getXpath().compile(expr).evaluate(node, XPathConstants.NODESET);
+    private static Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
+        var compiler = borrowCompiler();
+
+        try {
+            return compiler.compile(expr).evaluate(node, XPathConstants.NODESET);
+        }
+        finally {
+            returnCompiler(compiler);
+        }
+    }
+
+    private static Compiler borrowCompiler() {
+        var compiler = compilers.pollFirst();
+
+        if (compiler == null) {
+            return new Compiler();
+        }
+
+        pooledCompilers.decrementAndGet();
+        return compiler;
+    }
+
+    private static void returnCompiler(Compiler compiler) {
+        if (pooledCompilers.incrementAndGet() <= MAX_POOLED_COMPILERS) {
+            compilers.offerFirst(compiler);
+        }
+        else {
+            pooledCompilers.decrementAndGet();
+        }
+    }
+
+    static int getPooledCompilers() {
+        return pooledCompilers.get();
+    }
+
+    static long getCompilations() {
+        return compilations.get();
     }
 
     private static Stream<Node> xpathToStream(Node node, String expression) throws XPathExpressionException {
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import com.sun.net.httpserver.HttpServer;
+import nl.knaw.dans.validatedansbag.client.resources.DefaultApi;
+import nl.knaw.dans.validatedansbag.invoker.ApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncBagValidatorAdapterTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer stubValidator;
+    private volatile String response;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // local stand-in for dd-validate-dans-bag, answering every request with the current response once released
+        stubValidator = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubValidator.createContext("/", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubValidator.setExecutor(Executors.newCachedThreadPool());
+        stubValidator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubValidator.stop(0);
+        executor.shutdownNow();
+    }
+
+    private AsyncBagValidator validator() {
+        var apiClient = new ApiClient();
+        apiClient.setBasePath("http://localhost:" + stubValidator.getAddress().getPort());
+        return new AsyncBagValidatorAdapter(new DepositBagValidator(new DefaultApi(apiClient)), executor);
+    }
+
+    @Test
+    void validateAsync_should_return_before_the_service_responds() throws Exception {
+        response = "{\"isCompliant\": true, \"profileVersion\": \"1.0.0\"}";
+
+        var result = validator().validateAsync(Path.of("bag"));
+
+        assertThat(result).isNotDone();
+        release.countDown();
+        result.get(10, TimeUnit.SECONDS);
+        assertThat(result).isCompletedWithValue(null);
+    }
+
+    @Test
+    void validateAsync_should_complete_with_InvalidDepositException_for_non_compliant_bag() {
+        response = "{\"isCompliant\": false, \"profileVersion\": \"1.0.0\", \"ruleViolations\": [{\"rule\": \"1.1.1\", \"violation\": \"Not a bag\"}]}";
+        release.countDown();
+
+        var result = validator().validateAsync(Path.of("bag"));
+
+        assertThatThrownBy(result::join)
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(InvalidDepositException.class)
+            .hasMessageContaining("[1.1.1] Not a bag");
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import com.sun.net.httpserver.HttpServer;
+import nl.knaw.dans.vaultcatalog.client.ApiClient;
+import nl.knaw.dans.vaultcatalog.client.DefaultApi;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncVaultCatalogClientAdapterTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requestsReceived = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer stubCatalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // local stand-in for the vault catalog, holding back all responses until released
+        stubCatalog = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubCatalog.createContext("/", exchange -> {
+            requestsReceived.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var body = "{\"nbn\": \"urn:nbn:nl:ui:13-test\", \"swordToken\": \"sword:123\", \"dataSupplier\": \"user001\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubCatalog.setExecutor(Executors.newCachedThreadPool());
+        stubCatalog.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubCatalog.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void findDatasetAsync_should_keep_several_requests_in_flight() throws Exception {
+        var apiClient = new ApiClient();
+        apiClient.setBasePath("http://localhost:" + stubCatalog.getAddress().getPort());
+        var client = new AsyncVaultCatalogClientAdapter(new VaultCatalogClientImpl(new DefaultApi(apiClient)), executor);
+
+        var results = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < 3; i++) {
+            results.add(client.findDatasetAsync("sword:123"));
+        }
+
+        // all requests reach the service before any response has been sent
+        for (int i = 0; i < 100 && requestsReceived.get() < 3; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(requestsReceived.get()).isEqualTo(3);
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+
+        release.countDown();
+
+        assertThat(client.findDatasetAsync("sword:123").get(10, TimeUnit.SECONDS))
+            .get()
+            .extracting(d -> d.getNbn())
+            .isEqualTo("urn:nbn:nl:ui:13-test");
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void findDatasetAsync_should_carry_the_deposit_id_to_the_executor_thread() throws Exception {
+        var delegate = mock(VaultCatalogClient.class);
+        var seenDepositId = new AtomicReference<String>();
+        when(delegate.findDataset("sword:123")).thenAnswer(invocation -> {
+            seenDepositId.set(RemoteCallContext.getDepositId());
+            return Optional.empty();
+        });
+        var client = new AsyncVaultCatalogClientAdapter(delegate, executor);
+
+        try (var scope = RemoteCallContext.forDeposit("deposit-1")) {
+            client.findDatasetAsync("sword:123").get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(seenDepositId.get()).isEqualTo("deposit-1");
+        assertThat(RemoteCallContext.getDepositId()).isNull();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import com.sun.net.httpserver.HttpServer;
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.client.ApiClient;
+import nl.knaw.dans.vaultcatalog.client.DefaultApi;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchingVaultCatalogClientTest {
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> requestPaths = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer stubCatalog;
+    private VaultCatalogClient catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // local stand-in for the vault catalog, rejecting every request about the dataset with NBN "fail"
+        stubCatalog = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubCatalog.createContext("/", exchange -> {
+            var path = exchange.getRequestURI().getPath();
+            requestPaths.add(path);
+            exchange.getRequestBody().readAllBytes();
+            var body = (path.contains("fail") ? "{\"message\": \"rejected\"}" : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(path.contains("fail") ? 500 : 200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubCatalog.setExecutor(Executors.newCachedThreadPool());
+        stubCatalog.start();
+
+        var apiClient = new ApiClient();
+        apiClient.setBasePath("http://localhost:" + stubCatalog.getAddress().getPort());
+        catalog = new VaultCatalogClientImpl(new DefaultApi(apiClient));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubCatalog.stop(0);
+    }
+
+    private BatchingVaultCatalogClient client(int maxBatchSize, Duration maxDelay) {
+        return new BatchingVaultCatalogClient(catalog, maxBatchSize, maxDelay, 4) {
+            @Override
+            protected void submit(List<Registration<?>> batch) {
+                batchSizes.add(batch.size());
+                super.submit(batch);
+            }
+        };
+    }
+
+    private Deposit deposit(String nbn) {
+        var deposit = mock(Deposit.class);
+        when(deposit.getId()).thenReturn("deposit-" + nbn);
+        when(deposit.getNbn()).thenReturn(nbn);
+        when(deposit.getBagId()).thenReturn("urn:uuid:" + nbn);
+        when(deposit.getObjectVersion()).thenReturn(1);
+        return deposit;
+    }
+
+    @Test
+    void createDatasetForAsync_should_complete_a_future_per_deposit() throws Exception {
+        var client = client(3, Duration.ofMinutes(1));
+
+        var results = new ArrayList<CompletableFuture<DatasetDto>>();
+        for (var nbn : List.of("nbn1", "nbn2")) {
+            results.add(client.createDatasetForAsync(deposit(nbn)));
+        }
+
+        // the batch is not full yet, so nothing has been sent
+        assertThat(client.getPendingCount()).isEqualTo(2);
+        assertThat(results).noneMatch(CompletableFuture::isDone);
+        assertThat(requestPaths).isEmpty();
+
+        results.add(client.createDatasetForAsync(deposit("nbn3")));
+
+        assertThat(results.get(0).get(10, TimeUnit.SECONDS).getNbn()).isEqualTo("nbn1");
+        assertThat(results.get(1).get(10, TimeUnit.SECONDS).getNbn()).isEqualTo("nbn2");
+        assertThat(results.get(2).get(10, TimeUnit.SECONDS).getNbn()).isEqualTo("nbn3");
+        assertThat(batchSizes).containsExactly(3);
+        assertThat(requestPaths).hasSize(3);
+        client.stop();
+    }
+
+    @Test
+    void createDatasetFor_should_fail_only_the_deposit_that_was_rejected() throws Exception {
+        var client = client(2, Duration.ofMinutes(1));
+
+        var ok = client.createDatasetForAsync(deposit("nbn1"));
+        var failed = client.createDatasetForAsync(deposit("fail"));
+
+        assertThat(ok.get(10, TimeUnit.SECONDS).getNbn()).isEqualTo("nbn1");
+        assertThatThrownBy(() -> failed.get(10, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(RuntimeException.class);
+        assertThat(batchSizes).containsExactly(2);
+        client.stop();
+    }
+
+    @Test
+    void createDatasetFor_should_submit_an_incomplete_batch_after_the_max_delay() throws Exception {
+        var client = client(100, Duration.ofMillis(50));
+
+        var result = client.createDatasetFor(deposit("nbn1"));
+
+        assertThat(result.getNbn()).isEqualTo("nbn1");
+        assertThat(batchSizes).containsExactly(1);
+        assertThat(requestPaths).hasSize(1);
+        client.stop();
+    }
+
+    @Test
+    void stop_should_submit_pending_registrations() throws Exception {
+        var client = client(100, Duration.ofMinutes(1));
+
+        var result = client.addDatasetVersionForAsync(deposit("nbn1"));
+        assertThat(client.getPendingCount()).isEqualTo(1);
+        client.stop();
+
+        assertThat(result.get(10, TimeUnit.SECONDS).getDatasetNbn()).isEqualTo("nbn1");
+        assertThat(requestPaths).hasSize(1);
+        assertThatThrownBy(() -> client.createDatasetFor(deposit("nbn2")))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void findDataset_should_not_be_batched() throws Exception {
+        var client = client(100, Duration.ofMinutes(1));
+
+        client.findDataset("sword:123");
+
+        assertThat(requestPaths).hasSize(1);
+        assertThat(batchSizes).isEmpty();
+        client.stop();
+    }
+}
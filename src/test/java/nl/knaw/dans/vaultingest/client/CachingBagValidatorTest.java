@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import nl.knaw.dans.validatedansbag.client.api.ValidateCommandDto;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CachingBagValidatorTest extends AbstractTestWithTestDir {
+    private static final Duration TTL = Duration.ofDays(1);
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    private final BagValidator delegate = mock(BagValidator.class);
+    private final MutableClock clock = new MutableClock();
+    private Path bagDir;
+    private Path cacheDir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        bagDir = Files.createDirectories(testDir.resolve("bag"));
+        cacheDir = testDir.resolve("cache");
+        Files.writeString(bagDir.resolve("bagit.txt"), "BagIt-Version: 1.0\nTag-File-Character-Encoding: UTF-8\n");
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Created: 2024-01-01T00:00:00.000+01:00\n");
+        Files.writeString(bagDir.resolve("tagmanifest-sha1.txt"), "0123456789abcdef0123456789abcdef01234567  manifest-sha1.txt\n");
+    }
+
+    private CachingBagValidator validator(ValidateCommandDto.PackageTypeEnum packageType) throws Exception {
+        return new CachingBagValidator(delegate, packageType, cacheDir, TTL, clock);
+    }
+
+    @Test
+    void validate_should_validate_an_unchanged_bag_only_once() throws Exception {
+        validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT).validate(bagDir);
+        validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT).validate(bagDir);
+
+        verify(delegate, times(1)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_validate_again_when_the_tag_manifest_changes() throws Exception {
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+
+        validator.validate(bagDir);
+        Files.writeString(bagDir.resolve("tagmanifest-sha1.txt"), "fedcba9876543210fedcba9876543210fedcba98  manifest-sha1.txt\n");
+        validator.validate(bagDir);
+
+        verify(delegate, times(2)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_validate_again_for_another_package_type() throws Exception {
+        validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT).validate(bagDir);
+        validator(ValidateCommandDto.PackageTypeEnum.MIGRATION).validate(bagDir);
+
+        verify(delegate, times(2)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_reject_an_unchanged_invalid_bag_again_without_validating() throws Exception {
+        doThrow(new InvalidDepositException("Bag was not valid")).when(delegate).validate(any());
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+
+        assertThatThrownBy(() -> validator.validate(bagDir)).isInstanceOf(InvalidDepositException.class);
+        assertThatThrownBy(() -> validator.validate(bagDir))
+            .isInstanceOf(InvalidDepositException.class)
+            .hasMessage("Bag was not valid");
+
+        verify(delegate, times(1)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_not_cache_service_errors() throws Exception {
+        doThrow(new RuntimeException("Could not validate bag")).when(delegate).validate(any());
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+
+        assertThatThrownBy(() -> validator.validate(bagDir)).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> validator.validate(bagDir)).isInstanceOf(RuntimeException.class);
+
+        verify(delegate, times(2)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_always_validate_a_bag_without_tag_manifest() throws Exception {
+        Files.delete(bagDir.resolve("tagmanifest-sha1.txt"));
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+
+        validator.validate(bagDir);
+        validator.validate(bagDir);
+
+        verify(delegate, times(2)).validate(bagDir);
+    }
+
+    @Test
+    void validate_should_validate_again_after_ttl() throws Exception {
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+
+        validator.validate(bagDir);
+        clock.advance(TTL.minusMinutes(1));
+        validator.validate(bagDir);
+        clock.advance(Duration.ofMinutes(1));
+        validator.validate(bagDir);
+
+        verify(delegate, times(2)).validate(bagDir);
+    }
+
+    @Test
+    void prune_should_remove_expired_results_only() throws Exception {
+        var validator = validator(ValidateCommandDto.PackageTypeEnum.DEPOSIT);
+        validator.validate(bagDir);
+        clock.advance(TTL.minusHours(2));
+        validator(ValidateCommandDto.PackageTypeEnum.MIGRATION).validate(bagDir);
+        clock.advance(Duration.ofHours(2));
+
+        validator.prune();
+
+        try (var entries = Files.list(cacheDir)) {
+            assertThat(entries).containsExactly(cacheDir.resolve(validator(ValidateCommandDto.PackageTypeEnum.MIGRATION).fingerprint(bagDir).orElseThrow()));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import nl.knaw.dans.vaultcatalog.api.DatasetDto;
+import nl.knaw.dans.vaultcatalog.api.VersionExportDto;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingVaultCatalogClientTest {
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    private final VaultCatalogClient delegate = mock(VaultCatalogClient.class);
+    private final MutableClock clock = new MutableClock();
+
+    private DatasetDto dataset(String nbn, String swordToken) {
+        return new DatasetDto()
+            .nbn(nbn)
+            .swordToken(swordToken)
+            .addVersionExportsItem(new VersionExportDto().datasetNbn(nbn).ocflObjectVersionNumber(1));
+    }
+
+    private Deposit deposit(String nbn) {
+        var deposit = mock(Deposit.class);
+        when(deposit.getNbn()).thenReturn(nbn);
+        return deposit;
+    }
+
+    @Test
+    void findDataset_should_look_up_a_dataset_only_once() throws Exception {
+        when(delegate.findDataset("sword:1")).thenReturn(Optional.of(dataset("nbn1", "sword:1")));
+        var client = new CachingVaultCatalogClient(delegate, 10, Duration.ofMinutes(5), clock);
+
+        assertThat(client.findDataset("sword:1")).get().extracting(DatasetDto::getNbn).isEqualTo("nbn1");
+        assertThat(client.findDataset("sword:1")).get().extracting(DatasetDto::getNbn).isEqualTo("nbn1");
+
+        verify(delegate, times(1)).findDataset("sword:1");
+        assertThat(client.getHitCount()).isEqualTo(1);
+        assertThat(client.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findDataset_should_look_up_again_after_ttl() throws Exception {
+        when(delegate.findDataset("sword:1")).thenReturn(Optional.of(dataset("nbn1", "sword:1")));
+        var client = new CachingVaultCatalogClient(delegate, 10, Duration.ofMinutes(5), clock);
+
+        client.findDataset("sword:1");
+        clock.advance(Duration.ofMinutes(5));
+        client.findDataset("sword:1");
+
+        verify(delegate, times(2)).findDataset("sword:1");
+        assertThat(client.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void findDataset_should_evict_least_recently_used_dataset() throws Exception {
+        when(delegate.findDataset(any())).thenAnswer(invocation -> Optional.of(dataset("nbn-" + invocation.getArgument(0), invocation.getArgument(0))));
+        var client = new CachingVaultCatalogClient(delegate, 2, Duration.ofMinutes(5), clock);
+
+        client.findDataset("sword:1");
+        client.findDataset("sword:2");
+        client.findDataset("sword:1");
+        client.findDataset("sword:3");
+        client.findDataset("sword:1");
+        client.findDataset("sword:2");
+
+        verify(delegate, times(1)).findDataset("sword:1");
+        verify(delegate, times(2)).findDataset("sword:2");
+        assertThat(client.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    void findDataset_should_not_cache_datasets_that_are_not_found() throws Exception {
+        when(delegate.findDataset("sword:1")).thenReturn(Optional.empty());
+        var client = new CachingVaultCatalogClient(delegate, 10, Duration.ofMinutes(5), clock);
+
+        assertThat(client.findDataset("sword:1")).isEmpty();
+        assertThat(client.findDataset("sword:1")).isEmpty();
+
+        verify(delegate, times(2)).findDataset("sword:1");
+    }
+
+    @Test
+    void addDatasetVersionFor_should_add_the_version_to_the_cached_dataset() throws Exception {
+        when(delegate.findDataset("sword:1")).thenReturn(Optional.of(dataset("nbn1", "sword:1")));
+        when(delegate.addDatasetVersionFor(any())).thenReturn(new VersionExportDto().datasetNbn("nbn1").ocflObjectVersionNumber(2));
+        var client = new CachingVaultCatalogClient(delegate, 10, Duration.ofMinutes(5), clock);
+
+        client.findDataset("sword:1");
+        client.addDatasetVersionFor(deposit("nbn1"));
+
+        assertThat(client.findDataset("sword:1").orElseThrow().getVersionExports())
+            .extracting(VersionExportDto::getOcflObjectVersionNumber)
+            .containsExactly(1, 2);
+        verify(delegate, times(1)).findDataset("sword:1");
+    }
+
+    @Test
+    void addDatasetVersionFor_should_evict_the_dataset_if_adding_the_version_fails() throws Exception {
+        when(delegate.findDataset("sword:1")).thenReturn(Optional.of(dataset("nbn1", "sword:1")));
+        when(delegate.addDatasetVersionFor(any())).thenThrow(new IOException("Catalog unavailable"));
+        var client = new CachingVaultCatalogClient(delegate, 10, Duration.ofMinutes(5), clock);
+
+        client.findDataset("sword:1");
+        assertThatThrownBy(() -> client.addDatasetVersionFor(deposit("nbn1"))).isInstanceOf(IOException.class);
+        client.findDataset("sword:1");
+
+        verify(delegate, times(2)).findDataset("sword:1");
+    }
+}
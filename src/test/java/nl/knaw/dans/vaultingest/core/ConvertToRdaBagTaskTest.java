@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.client.BagValidator;
+import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.deposit.Outbox;
+import nl.knaw.dans.vaultingest.core.rdabag.DefaultRdaBagWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriter;
+import nl.knaw.dans.vaultingest.core.util.IdMinter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConvertToRdaBagTaskTest extends AbstractTestWithTestDir {
+    private static final String NBN = "urn:nbn:nl:ui:13-abc";
+
+    private final Outbox outbox = mock(Outbox.class);
+    private final DefaultRdaBagWriterFactory rdaBagWriterFactory = mock(DefaultRdaBagWriterFactory.class);
+    private final RdaBagWriter rdaBagWriter = mock(RdaBagWriter.class);
+    private final VaultCatalogClient vaultCatalogClient = mock(VaultCatalogClient.class);
+    private final BagValidator bagValidator = mock(BagValidator.class);
+    private final IdMinter idMinter = mock(IdMinter.class);
+    private final DepositManager depositManager = mock(DepositManager.class);
+    private final Deposit deposit = mock(Deposit.class);
+
+    private Path depositDir;
+    private Path dveOutbox;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        depositDir = Files.createDirectories(testDir.resolve("deposit/bag")).getParent();
+        dveOutbox = Files.createDirectories(testDir.resolve("rda-bags"));
+
+        when(depositManager.loadDeposit(eq(depositDir), any())).thenReturn(deposit);
+        when(deposit.getBagId()).thenReturn("urn:uuid:1234");
+        when(deposit.getObjectVersion()).thenReturn(1);
+        when(deposit.getNbn()).thenReturn(NBN);
+        when(idMinter.mintUrnNbn()).thenReturn(NBN);
+        when(rdaBagWriterFactory.createRdaBagWriter(deposit)).thenReturn(rdaBagWriter);
+        doAnswer(invocation -> {
+            Files.writeString(invocation.getArgument(0), "new zip");
+            return null;
+        }).when(rdaBagWriter).writeZip(any());
+    }
+
+    private ConvertToRdaBagTask createTask() {
+        return new ConvertToRdaBagTaskFactory(Map.of(), rdaBagWriterFactory, vaultCatalogClient, bagValidator, idMinter, depositManager, dveOutbox, StageLimits.unlimited(),
+            new IngestMetrics(new MetricRegistry()), null, null)
+            .create(depositDir, outbox);
+    }
+
+    // simulates an earlier run that stopped after the given stages
+    private void completedBefore(ProcessingStage... stages) throws IOException {
+        var journal = DepositJournal.open(depositDir);
+
+        for (var stage : stages) {
+            if (stage == ProcessingStage.CATALOG) {
+                journal.record(stage, Map.of("nbn", NBN, "objectVersion", "1"));
+            }
+            else {
+                journal.record(stage);
+            }
+        }
+    }
+
+    private Path rdaBag() {
+        return dveOutbox.resolve("vaas-1234-v1.zip");
+    }
+
+    private void assertAccepted() throws IOException {
+        verify(outbox).moveDeposit(deposit);
+        verify(outbox, never()).move(any(), any());
+        assertThat(depositDir.resolve(DepositJournal.FILENAME)).doesNotExist();
+    }
+
+    @Test
+    void run_should_run_all_stages_for_a_new_deposit() throws Exception {
+        createTask().run();
+
+        verify(bagValidator).validate(depositDir.resolve("bag"));
+        verify(vaultCatalogClient).createDatasetFor(deposit);
+        verify(rdaBagWriter).generateMetadata();
+        verify(rdaBagWriter).writeZip(rdaBag());
+        assertThat(rdaBag()).hasContent("new zip");
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_not_validate_again_when_resumed_after_validation() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION);
+
+        createTask().run();
+
+        verify(bagValidator, never()).validate(any());
+        verify(vaultCatalogClient).createDatasetFor(deposit);
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_not_register_in_vault_catalog_again_when_resumed_after_catalog() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG);
+
+        createTask().run();
+
+        verify(vaultCatalogClient, never()).createDatasetFor(any());
+        verify(idMinter, never()).mintUrnNbn();
+        verify(deposit).setNbn(NBN);
+        verify(deposit).setObjectVersion(1);
+        verify(rdaBagWriter).generateMetadata();
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_generate_metadata_again_when_resumed_after_conversion_if_the_writer_did_not_store_it_in_the_deposit() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG, ProcessingStage.CONVERSION);
+        when(rdaBagWriter.isMetadataStoredInDeposit()).thenReturn(false);
+
+        createTask().run();
+
+        verify(rdaBagWriter).generateMetadata();
+        verify(rdaBagWriter).writeZip(rdaBag());
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_not_generate_metadata_again_when_resumed_after_conversion_if_the_writer_stored_it_in_the_deposit() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG, ProcessingStage.CONVERSION);
+        when(rdaBagWriter.isMetadataStoredInDeposit()).thenReturn(true);
+
+        createTask().run();
+
+        verify(rdaBagWriter, never()).generateMetadata();
+        verify(rdaBagWriter).writeZip(rdaBag());
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_not_write_zip_again_when_resumed_after_zip_even_if_it_was_taken_from_the_outbox() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG, ProcessingStage.CONVERSION, ProcessingStage.ZIP);
+
+        createTask().run();
+
+        verify(rdaBagWriter, never()).generateMetadata();
+        verify(rdaBagWriter, never()).writeZip(any());
+        assertThat(rdaBag()).doesNotExist();
+        verify(deposit).setState(Deposit.State.ACCEPTED, "Deposit accepted");
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_keep_a_zip_that_was_moved_into_place_but_not_recorded() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG, ProcessingStage.CONVERSION);
+        when(rdaBagWriter.isMetadataStoredInDeposit()).thenReturn(true);
+        Files.writeString(rdaBag(), "earlier zip");
+
+        createTask().run();
+
+        verify(rdaBagWriter, never()).writeZip(any());
+        assertThat(rdaBag()).hasContent("earlier zip");
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_delete_an_incomplete_zip_before_writing_it_again() throws Exception {
+        completedBefore(ProcessingStage.VALIDATION, ProcessingStage.LOAD, ProcessingStage.CATALOG, ProcessingStage.CONVERSION);
+        when(rdaBagWriter.isMetadataStoredInDeposit()).thenReturn(true);
+        var tempZipFile = RdaBagWriter.getTempZipFile(rdaBag());
+        Files.writeString(tempZipFile, "partial zip");
+
+        createTask().run();
+
+        assertThat(tempZipFile).doesNotExist();
+        assertThat(rdaBag()).hasContent("new zip");
+        assertAccepted();
+    }
+
+    @Test
+    void run_should_keep_the_journal_when_the_deposit_failed() throws Exception {
+        doThrow(new IOException("disk full")).when(rdaBagWriter).writeZip(any());
+
+        createTask().run();
+
+        verify(outbox).move(depositDir, Deposit.State.FAILED);
+        var journal = DepositJournal.open(depositDir);
+        assertThat(journal.isCompleted(ProcessingStage.CONVERSION)).isTrue();
+        assertThat(journal.isCompleted(ProcessingStage.ZIP)).isFalse();
+    }
+}
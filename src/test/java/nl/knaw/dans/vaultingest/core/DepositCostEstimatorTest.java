@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepositCostEstimatorTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void estimate_should_use_payload_oxum() throws Exception {
+        var bagDir = Files.createDirectories(testDir.resolve("deposit/bag"));
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2024-01-01\nPayload-Oxum: 123456.7\n");
+
+        var estimate = new DepositCostEstimator().estimate(testDir.resolve("deposit"));
+
+        assertThat(estimate).isEqualTo(new DepositCostEstimate(123456, 7));
+    }
+
+    @Test
+    void estimate_should_count_payload_if_payload_oxum_is_missing() throws Exception {
+        var bagDir = Files.createDirectories(testDir.resolve("deposit/bag"));
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2024-01-01\n");
+        Files.createDirectories(bagDir.resolve("data/sub"));
+        Files.writeString(bagDir.resolve("data/a.txt"), "12345");
+        Files.writeString(bagDir.resolve("data/sub/b.txt"), "123");
+        Files.writeString(bagDir.resolve("manifest-sha1.txt"), "aaa  data/a.txt\nbbb  data/sub/b.txt\n");
+
+        var estimate = new DepositCostEstimator().estimate(testDir.resolve("deposit"));
+
+        assertThat(estimate).isEqualTo(new DepositCostEstimate(8, 2));
+    }
+
+    @Test
+    void estimate_should_return_unknown_for_deposit_without_bag() throws Exception {
+        Files.createDirectories(testDir.resolve("deposit"));
+
+        assertThat(new DepositCostEstimator().estimate(testDir.resolve("deposit"))).isEqualTo(DepositCostEstimate.UNKNOWN);
+    }
+
+    @Test
+    void getDatasetSwordToken_should_use_is_version_of_for_an_update() throws Exception {
+        var bagDir = Files.createDirectories(testDir.resolve("deposit/bag"));
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2024-01-01\nIs-Version-Of: urn:uuid:1234\n");
+        Files.writeString(testDir.resolve("deposit/deposit.properties"), "dataverse.sword-token = sword:5678\n");
+
+        assertThat(new DepositCostEstimator().getDatasetSwordToken(testDir.resolve("deposit"))).contains("sword:1234");
+    }
+
+    @Test
+    void getDatasetSwordToken_should_use_sword_token_for_a_first_version() throws Exception {
+        var bagDir = Files.createDirectories(testDir.resolve("deposit/bag"));
+        Files.writeString(bagDir.resolve("bag-info.txt"), "Bagging-Date: 2024-01-01\n");
+        Files.writeString(testDir.resolve("deposit/deposit.properties"), "dataverse.sword-token = sword:1234\n");
+
+        assertThat(new DepositCostEstimator().getDatasetSwordToken(testDir.resolve("deposit"))).contains("sword:1234");
+    }
+
+    @Test
+    void getDatasetSwordToken_should_return_empty_if_unknown() throws Exception {
+        Files.createDirectories(testDir.resolve("deposit/bag"));
+
+        assertThat(new DepositCostEstimator().getDatasetSwordToken(testDir.resolve("deposit"))).isEmpty();
+    }
+
+    @Test
+    void getCost_should_add_overhead_per_file() {
+        assertThat(new DepositCostEstimate(1000, 3).getCost(100)).isEqualTo(1300);
+    }
+}
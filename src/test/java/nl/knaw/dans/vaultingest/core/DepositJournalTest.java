@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DepositJournalTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void open_should_return_empty_journal_for_new_deposit() throws Exception {
+        var journal = DepositJournal.open(testDir);
+
+        assertThat(journal.isResumed()).isFalse();
+        assertThat(journal.isCompleted(ProcessingStage.VALIDATION)).isFalse();
+        assertThat(testDir.resolve(DepositJournal.FILENAME)).doesNotExist();
+    }
+
+    @Test
+    void open_should_return_stages_recorded_before() throws Exception {
+        var journal = DepositJournal.open(testDir);
+        journal.record(ProcessingStage.VALIDATION);
+        journal.record(ProcessingStage.CATALOG, Map.of("nbn", "urn:nbn:nl:ui:13-abc"));
+
+        var reopened = DepositJournal.open(testDir);
+
+        assertThat(reopened.isResumed()).isTrue();
+        assertThat(reopened.isCompleted(ProcessingStage.VALIDATION)).isTrue();
+        assertThat(reopened.isCompleted(ProcessingStage.CATALOG)).isTrue();
+        assertThat(reopened.isCompleted(ProcessingStage.CONVERSION)).isFalse();
+        assertThat(reopened.getProperties(ProcessingStage.CATALOG)).containsExactly(Map.entry("nbn", "urn:nbn:nl:ui:13-abc"));
+        assertThat(reopened.getProperties(ProcessingStage.VALIDATION)).isEmpty();
+    }
+
+    @Test
+    void open_should_ignore_line_that_was_cut_off() throws Exception {
+        DepositJournal.open(testDir).record(ProcessingStage.VALIDATION);
+        Files.writeString(testDir.resolve(DepositJournal.FILENAME), "CATALOG nbn=urn:nbn", StandardOpenOption.APPEND);
+
+        var reopened = DepositJournal.open(testDir);
+
+        assertThat(reopened.isCompleted(ProcessingStage.VALIDATION)).isTrue();
+        assertThat(reopened.isCompleted(ProcessingStage.CATALOG)).isFalse();
+    }
+
+    @Test
+    void record_should_reject_property_with_whitespace() throws Exception {
+        var journal = DepositJournal.open(testDir);
+
+        assertThatThrownBy(() -> journal.record(ProcessingStage.CATALOG, Map.of("nbn", "has space")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void delete_should_remove_journal() throws Exception {
+        var journal = DepositJournal.open(testDir);
+        journal.record(ProcessingStage.VALIDATION);
+
+        journal.delete();
+
+        assertThat(testDir.resolve(DepositJournal.FILENAME)).doesNotExist();
+        assertThat(DepositJournal.open(testDir).isResumed()).isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DepositPipelineTest {
+
+    private ConvertToRdaBagTask mockTask(ProcessingStage failingStage) {
+        var task = mock(ConvertToRdaBagTask.class);
+        when(task.getPath()).thenReturn(Path.of("deposit"));
+        when(task.runStage(any())).thenAnswer(invocation -> invocation.getArgument(0) != failingStage);
+        // without asynchronous clients runStageAsync delegates to runStage
+        when(task.runStageAsync(any())).thenCallRealMethod();
+        return task;
+    }
+
+    @Test
+    void execute_should_run_all_stages_in_order() throws Exception {
+        var pipeline = new DepositPipeline(Map.of(ProcessingStage.CONVERSION, 2), 10);
+        var task = mockTask(null);
+
+        pipeline.start();
+        try {
+            pipeline.execute(task);
+
+            verify(task, timeout(5000)).runStage(ProcessingStage.FINISH);
+            InOrder inOrder = Mockito.inOrder(task);
+            for (var stage : ProcessingStage.values()) {
+                inOrder.verify(task).runStage(stage);
+            }
+        }
+        finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void execute_should_not_hand_over_failed_deposit_to_next_stage() throws Exception {
+        var pipeline = new DepositPipeline(Map.of(), 10);
+        var failing = mockTask(ProcessingStage.CATALOG);
+        var succeeding = mockTask(null);
+
+        pipeline.start();
+        try {
+            pipeline.execute(failing);
+            pipeline.execute(succeeding);
+
+            verify(succeeding, timeout(5000)).runStage(ProcessingStage.FINISH);
+            verify(failing).runStage(ProcessingStage.CATALOG);
+            verify(failing, never()).runStage(ProcessingStage.CONVERSION);
+        }
+        finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void execute_should_not_keep_worker_busy_while_waiting_for_remote_service() throws Exception {
+        var pipeline = new DepositPipeline(Map.of(), 10);
+        var waiting = mockTask(null);
+        var response = new CompletableFuture<Boolean>();
+        when(waiting.runStageAsync(ProcessingStage.VALIDATION)).thenReturn(response);
+        var other = mockTask(null);
+
+        pipeline.start();
+        try {
+            pipeline.execute(waiting);
+            pipeline.execute(other);
+
+            // the single VALIDATION worker was free for the other deposit
+            verify(other, timeout(5000)).runStage(ProcessingStage.FINISH);
+            assertThat(pipeline.getInFlight(ProcessingStage.VALIDATION)).isEqualTo(1);
+
+            response.complete(true);
+
+            verify(waiting, timeout(5000)).runStage(ProcessingStage.FINISH);
+            assertThat(pipeline.getInFlight(ProcessingStage.VALIDATION)).isEqualTo(0);
+        }
+        finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void getQueueDepth_should_return_number_of_waiting_deposits() {
+        var pipeline = new DepositPipeline(Map.of(), 10);
+
+        // not started, so the deposits stay in the queue of the first stage
+        pipeline.execute(mockTask(null));
+        pipeline.execute(mockTask(null));
+
+        assertThat(pipeline.getQueueDepth(ProcessingStage.VALIDATION)).isEqualTo(2);
+        assertThat(pipeline.getQueueDepth(ProcessingStage.LOAD)).isEqualTo(0);
+        assertThat(pipeline.getActiveWorkers(ProcessingStage.VALIDATION)).isEqualTo(0);
+    }
+
+    @Test
+    void execute_should_reject_other_runnables() {
+        var pipeline = new DepositPipeline(Map.of(), 10);
+
+        assertThatThrownBy(() -> pipeline.execute(() -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DepositSchedulerTest {
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private final List<Path> handedOver = new CopyOnWriteArrayList<>();
+    private final Executor recordingExecutor = task -> handedOver.add(((ConvertToRdaBagTask) task).getPath());
+    private final AtomicLong now = new AtomicLong();
+    private final DepositCostEstimator estimator = mock(DepositCostEstimator.class);
+    private final Map<String, CompletableFuture<Void>> completions = new ConcurrentHashMap<>();
+    private DepositScheduler scheduler;
+
+    private ConvertToRdaBagTask task(String name, long payloadBytes) {
+        var path = Path.of(name);
+        var task = mock(ConvertToRdaBagTask.class);
+        var completion = new CompletableFuture<Void>();
+        completions.put(name, completion);
+        when(task.getPath()).thenReturn(path);
+        when(task.getCompletion()).thenReturn(completion);
+        when(estimator.estimate(path)).thenReturn(new DepositCostEstimate(payloadBytes, 1));
+        return task;
+    }
+
+    private ConvertToRdaBagTask versionOf(String dataset, String name, long payloadBytes) {
+        var task = task(name, payloadBytes);
+        when(estimator.getDatasetSwordToken(Path.of(name))).thenReturn(Optional.of(dataset));
+        return task;
+    }
+
+    private void waitForHandOvers(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && handedOver.size() < count; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    void execute_should_hand_over_smallest_deposit_first() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 1, 0, 0, now::get);
+        scheduler.execute(task("large", 500 * GB));
+        scheduler.execute(task("small", GB));
+        scheduler.execute(task("medium", 10 * GB));
+
+        assertThat(scheduler.getQueuedDeposits()).isEqualTo(3);
+        assertThat(scheduler.getQueuedCost()).isEqualTo(511 * GB);
+
+        scheduler.start();
+        waitForHandOvers(1);
+        assertThat(handedOver).containsExactly(Path.of("small"));
+        assertThat(scheduler.getInFlight()).isEqualTo(1);
+
+        completions.get("small").complete(null);
+        waitForHandOvers(2);
+        completions.get("medium").complete(null);
+        waitForHandOvers(3);
+
+        assertThat(handedOver).containsExactly(Path.of("small"), Path.of("medium"), Path.of("large"));
+        assertThat(scheduler.getQueuedCost()).isEqualTo(0);
+    }
+
+    @Test
+    void execute_should_let_a_deposit_that_waited_long_enough_go_before_smaller_ones() throws Exception {
+        // aging of 1 GB per second
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 1, 0, GB, now::get);
+        scheduler.execute(task("large", 100 * GB));
+        now.set(200_000_000_000L); // 200 seconds later
+        scheduler.execute(task("small", GB));
+
+        scheduler.start();
+        waitForHandOvers(1);
+
+        assertThat(handedOver).containsExactly(Path.of("large"));
+    }
+
+    @Test
+    void execute_should_order_deposits_with_equal_cost_by_arrival() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 3, 0, GB, now::get);
+        scheduler.execute(task("first", GB));
+        scheduler.execute(task("second", GB));
+        scheduler.execute(task("third", GB));
+
+        scheduler.start();
+        waitForHandOvers(3);
+
+        assertThat(handedOver).containsExactly(Path.of("first"), Path.of("second"), Path.of("third"));
+    }
+
+    @Test
+    void execute_should_keep_deposits_of_the_same_dataset_in_arrival_order() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 2, 0, 0, now::get);
+        scheduler.execute(versionOf("sword:x", "x-v1", 100 * GB));
+        scheduler.execute(versionOf("sword:x", "x-v2", GB));
+        scheduler.execute(task("other", 10 * GB));
+
+        assertThat(scheduler.getQueuedDeposits()).isEqualTo(3);
+
+        scheduler.start();
+        waitForHandOvers(2);
+        Thread.sleep(100);
+
+        // the small second version must not overtake the first, nor start before the first has finished
+        assertThat(handedOver).containsExactly(Path.of("other"), Path.of("x-v1"));
+
+        completions.get("other").complete(null);
+        Thread.sleep(100);
+        assertThat(handedOver).hasSize(2);
+
+        completions.get("x-v1").complete(null);
+        waitForHandOvers(3);
+
+        assertThat(handedOver).containsExactly(Path.of("other"), Path.of("x-v1"), Path.of("x-v2"));
+        assertThat(scheduler.getQueuedDeposits()).isEqualTo(0);
+    }
+
+    private FairSharePolicy fairShare(Map<String, Integer> weights, Map<String, Integer> maxInFlight) {
+        // the depositor is the first letter of the deposit name, instead of read from deposit.properties
+        return new FairSharePolicy(true, 1, weights, maxInFlight) {
+
+            @Override
+            public String getShare(Path depositDir) {
+                return depositDir.toString().substring(0, 1);
+            }
+        };
+    }
+
+    private void completeAll() {
+        handedOver.forEach(path -> completions.get(path.toString()).complete(null));
+    }
+
+    private long countHandedOver(String depositor) {
+        return handedOver.stream().filter(path -> path.toString().startsWith(depositor)).count();
+    }
+
+    @Test
+    void execute_should_alternate_between_depositors_with_equal_weights() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 1, 0, 0, fairShare(Map.of(), Map.of()), null, now::get);
+        for (int i = 1; i <= 6; i++) {
+            scheduler.execute(task("a" + i, GB));
+        }
+        scheduler.execute(task("b1", GB));
+        scheduler.execute(task("b2", GB));
+
+        scheduler.start();
+        for (int i = 1; i <= 4; i++) {
+            waitForHandOvers(i);
+            completeAll();
+        }
+
+        assertThat(countHandedOver("a")).isEqualTo(2);
+        assertThat(countHandedOver("b")).isEqualTo(2);
+    }
+
+    @Test
+    void execute_should_divide_capacity_in_proportion_to_weights() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 1, 0, 0, fairShare(Map.of("a", 3), Map.of()), null, now::get);
+        for (int i = 1; i <= 6; i++) {
+            scheduler.execute(task("a" + i, GB));
+            scheduler.execute(task("b" + i, GB));
+        }
+
+        scheduler.start();
+        for (int i = 1; i <= 4; i++) {
+            waitForHandOvers(i);
+            completeAll();
+        }
+
+        assertThat(countHandedOver("a")).isEqualTo(3);
+        assertThat(countHandedOver("b")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_should_not_exceed_max_in_flight_of_depositor() throws Exception {
+        scheduler = new DepositScheduler(recordingExecutor, estimator, 3, 0, 0, fairShare(Map.of(), Map.of("a", 1)), null, now::get);
+        scheduler.execute(task("a1", GB));
+        scheduler.execute(task("a2", GB));
+        scheduler.execute(task("b1", 10 * GB));
+
+        scheduler.start();
+        waitForHandOvers(2);
+        Thread.sleep(100);
+
+        assertThat(handedOver).containsExactlyInAnyOrder(Path.of("a1"), Path.of("b1"));
+        assertThat(scheduler.getInFlight("a")).isEqualTo(1);
+        assertThat(scheduler.getQueuedDeposits("a")).isEqualTo(1);
+
+        completions.get("a1").complete(null);
+        waitForHandOvers(3);
+
+        assertThat(handedOver).contains(Path.of("a2"));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import com.codahale.metrics.MetricRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestMetricsTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void constructor_should_register_a_timer_for_each_step() {
+        var registry = new MetricRegistry();
+        new IngestMetrics(registry);
+
+        assertThat(registry.getTimers()).containsKeys(
+            "nl.knaw.dans.vaultingest.core.ConvertToRdaBagTask.validate",
+            "nl.knaw.dans.vaultingest.core.ConvertToRdaBagTask.catalog-create",
+            "nl.knaw.dans.vaultingest.core.ConvertToRdaBagTask.oai-ore-jsonld",
+            "nl.knaw.dans.vaultingest.core.ConvertToRdaBagTask.outbox-move");
+        assertThat(registry.getTimers()).hasSize(IngestStep.values().length);
+    }
+
+    @Test
+    public void time_should_record_the_step_when_the_context_is_closed() {
+        var metrics = new IngestMetrics(new MetricRegistry());
+
+        try (var timer = metrics.time(IngestStep.ZIP, "deposit-1")) {
+            assertThat(metrics.getTimer(IngestStep.ZIP).getCount()).isZero();
+        }
+
+        assertThat(metrics.getTimer(IngestStep.ZIP).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.VALIDATE).getCount()).isZero();
+    }
+
+    @Test
+    public void counters_should_be_shared_by_instances_on_the_same_registry() {
+        var registry = new MetricRegistry();
+        var autoIngest = new IngestMetrics(registry);
+        var migration = new IngestMetrics(registry);
+
+        autoIngest.depositAccepted();
+        migration.depositAccepted();
+        migration.depositRejected();
+        autoIngest.zipWritten(100);
+        migration.zipWritten(50);
+        autoIngest.depositLoaded(3);
+
+        assertThat(autoIngest.getAcceptedCount()).isEqualTo(2);
+        assertThat(autoIngest.getRejectedCount()).isEqualTo(1);
+        assertThat(autoIngest.getFailedCount()).isZero();
+        assertThat(migration.getBytesZipped()).isEqualTo(150);
+        assertThat(migration.getFilesPerDeposit().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void time_should_emit_a_jfr_event_for_the_deposit_and_step() throws Exception {
+        var metrics = new IngestMetrics(new MetricRegistry());
+        var recordingFile = testDir.resolve("recording.jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable("nl.knaw.dans.vaultingest.IngestStep");
+            recording.start();
+
+            try (var timer = metrics.time(IngestStep.ZIP, "deposit-1")) {
+                timer.setFileCount(3);
+                timer.setBytes(1024);
+            }
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        var events = RecordingFile.readAllEvents(recordingFile).stream()
+            .filter(e -> e.getEventType().getName().equals("nl.knaw.dans.vaultingest.IngestStep"))
+            .toList();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getString("depositId")).isEqualTo("deposit-1");
+        assertThat(events.get(0).getString("step")).isEqualTo("zip");
+        assertThat(events.get(0).getInt("fileCount")).isEqualTo(3);
+        assertThat(events.get(0).getLong("bytes")).isEqualTo(1024);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StageLimitsTest {
+
+    @Test
+    void enter_should_not_allow_more_deposits_in_a_stage_than_the_limit() throws Exception {
+        var stageLimits = new StageLimits(Map.of(ProcessingStage.CONVERSION, 2));
+        var inStage = new AtomicInteger();
+        var maxInStage = new AtomicInteger();
+        var done = new CountDownLatch(8);
+        var executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                executor.execute(() -> {
+                    try (var permit = stageLimits.enter(ProcessingStage.CONVERSION)) {
+                        maxInStage.accumulateAndGet(inStage.incrementAndGet(), Math::max);
+                        Thread.sleep(20);
+                        inStage.decrementAndGet();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxInStage.get()).isEqualTo(2);
+        assertThat(stageLimits.getAvailablePermits(ProcessingStage.CONVERSION)).isEqualTo(2);
+    }
+
+    @Test
+    void enter_should_not_limit_stage_without_limit() {
+        var stageLimits = new StageLimits(Map.of(ProcessingStage.ZIP, 1));
+
+        try (var first = stageLimits.enter(ProcessingStage.VALIDATION); var second = stageLimits.enter(ProcessingStage.VALIDATION)) {
+            assertThat(stageLimits.getAvailablePermits(ProcessingStage.VALIDATION)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void close_should_release_permit_only_once() {
+        var stageLimits = new StageLimits(Map.of(ProcessingStage.ZIP, 1));
+
+        var permit = stageLimits.enter(ProcessingStage.ZIP);
+        assertThat(stageLimits.getAvailablePermits(ProcessingStage.ZIP)).isEqualTo(0);
+
+        permit.close();
+        permit.close();
+        assertThat(stageLimits.getAvailablePermits(ProcessingStage.ZIP)).isEqualTo(1);
+    }
+
+    @Test
+    void constructor_should_reject_limit_below_one() {
+        assertThatThrownBy(() -> new StageLimits(Map.of(ProcessingStage.CATALOG, 0)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
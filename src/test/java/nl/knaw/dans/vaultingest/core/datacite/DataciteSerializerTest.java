@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.datacite;
+
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import org.datacite.schema.kernel_4.Resource;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataciteSerializerTest {
+
+    @Test
+    void serialize_should_write_same_xml_to_stream_as_to_string() throws Exception {
+        var resource = loadResource();
+        var serializer = new DataciteSerializer();
+        var output = new ByteArrayOutputStream();
+
+        serializer.serialize(resource, output);
+
+        assertThat(output.toString(StandardCharsets.UTF_8))
+            .isEqualTo(serializer.serialize(resource))
+            .contains("10.17026/dans-z6y-5y2e");
+    }
+
+    @Test
+    void serialize_should_give_identical_results_when_used_concurrently() throws Exception {
+        var resource = loadResource();
+        var serializer = new DataciteSerializer();
+        var expected = serializer.serialize(resource);
+        var executor = Executors.newFixedThreadPool(8);
+
+        try {
+            var tasks = new ArrayList<Callable<String>>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(() -> serializer.serialize(resource));
+            }
+
+            for (var result : executor.invokeAll(tasks)) {
+                assertThat(result.get()).isEqualTo(expected);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Resource loadResource() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), Map.of("user001", "Name of user"));
+        return new DataciteConverter().convert(deposit);
+    }
+}
@@ -85,4 +85,20 @@ class CommonDepositManagerIntegrationTest {
             assertThat(stream.size()).isGreaterThan(0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void loadDeposit_should_stream_files_xml_above_threshold() {
+        var s = getClass().getResource("/input/0b9bb5ee-3187-4387-bb39-2c09536c79f7");
+        assert s != null;
+        var path = Path.of(s.getPath());
+
+        var expected = new DepositManager(new XmlReader()).loadDeposit(path, Map.of("user001", "Name of user"));
+        var deposit = new DepositManager(new XmlReader(), 0).loadDeposit(path, Map.of("user001", "Name of user"));
+
+        assertThat(deposit.getFilesXml()).isNull();
+        assertThat(deposit.getPayloadFiles()).extracting("path")
+            .containsExactlyElementsOf(expected.getPayloadFiles().stream().map(PayloadFile::getPath).toList());
+        assertThat(deposit.getPayloadFiles()).extracting("accessibleToRights")
+            .containsExactlyElementsOf(expected.getPayloadFiles().stream().map(PayloadFile::getAccessibleToRights).toList());
+    }
+}
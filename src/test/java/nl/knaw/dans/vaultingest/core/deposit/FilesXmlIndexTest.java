@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilesXmlIndexTest {
+
+    private static final String FILES_XML = ""
+        + "<files xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" xmlns:dcterms=\"http://purl.org/dc/terms/\">\n"
+        + "    <file filepath=\"data/a.txt\">\n"
+        + "        <accessibleToRights>ANONYMOUS</accessibleToRights>\n"
+        + "        <visibleToRights>ANONYMOUS</visibleToRights>\n"
+        + "        <dcterms:description>First file</dcterms:description>\n"
+        + "    </file>\n"
+        + "    <file filepath=\"data/sub/b.txt\">\n"
+        + "        <accessibleToRights>NONE</accessibleToRights>\n"
+        + "    </file>\n"
+        + "</files>";
+
+    @Test
+    void builder_should_index_all_file_elements_in_document_order() throws Exception {
+        var filesXml = new XmlReader().readXmlString(FILES_XML);
+        var builder = FilesXmlIndex.builder();
+        FilesXmlIndex.getFileElements(filesXml).forEach(builder::add);
+        var index = builder.build();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getFilepath(0)).isEqualTo("data/a.txt");
+        assertThat(index.getAccessibleToRights(0)).isEqualTo("ANONYMOUS");
+        assertThat(index.getVisibleToRights(0)).isEqualTo("ANONYMOUS");
+        assertThat(index.getDescription(0)).isEqualTo("First file");
+        assertThat(index.getFilepath(1)).isEqualTo("data/sub/b.txt");
+        assertThat(index.getAccessibleToRights(1)).isEqualTo("NONE");
+        assertThat(index.getVisibleToRights(1)).isNull();
+        assertThat(index.getDescription(1)).isNull();
+    }
+
+    @Test
+    void filesXmlReader_should_produce_same_index_as_dom() throws Exception {
+        var filesXml = new XmlReader().readXmlString(FILES_XML);
+        var builder = FilesXmlIndex.builder();
+        FilesXmlIndex.getFileElements(filesXml).forEach(builder::add);
+        var expected = builder.build();
+
+        var index = new FilesXmlReader().read(new ByteArrayInputStream(FILES_XML.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertThat(index.getFilepath(i)).isEqualTo(expected.getFilepath(i));
+            assertThat(index.getAccessibleToRights(i)).isEqualTo(expected.getAccessibleToRights(i));
+            assertThat(index.getVisibleToRights(i)).isEqualTo(expected.getVisibleToRights(i));
+            assertThat(index.getDescription(i)).isEqualTo(expected.getDescription(i));
+        }
+    }
+
+    @Test
+    void payloadFile_should_read_attributes_from_index() {
+        var builder = FilesXmlIndex.builder();
+        builder.add("data/a.txt", "KNOWN", "ANONYMOUS", null);
+        var position = builder.add("data/sub/b.txt", "NONE", "KNOWN", "Second file");
+        var index = builder.build();
+
+        var payloadFile = PayloadFile.builder()
+            .filesXmlIndex(index)
+            .filesXmlIndexPosition(position)
+            .build();
+
+        assertThat(payloadFile.getPath()).hasToString("data/sub/b.txt");
+        assertThat(payloadFile.getAccessibleToRights()).isEqualTo("NONE");
+        assertThat(payloadFile.getVisibleToRights()).isEqualTo("KNOWN");
+        assertThat(payloadFile.getDescription()).isEqualTo("Second file");
+    }
+}
@@ -16,7 +16,9 @@
 package nl.knaw.dans.vaultingest.core.deposit;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -81,4 +83,25 @@ class OriginalFilepathsTest {
         var pathOnDisk = Path.of("data/no/mapping/here");
         assertThat(paths.getPhysicalPath(pathOnDisk)).isEqualTo(pathOnDisk);
     }
-}
\ No newline at end of file
+
+    @Test
+    void addMapping_should_keep_first_mapping_for_duplicate_paths() {
+        var paths = new OriginalFilepaths();
+        paths.addMapping(Path.of("data/logical"), Path.of("data/first"));
+        paths.addMapping(Path.of("data/logical"), Path.of("data/second"));
+
+        assertThat(paths.getPhysicalPath(Path.of("data/logical"))).isEqualTo(Path.of("data/first"));
+        assertThat(paths.getLogicalPath(Path.of("data/second"))).isEqualTo(Path.of("data/logical"));
+    }
+
+    @Test
+    void load_should_read_physical_and_logical_paths(@TempDir Path testDir) throws Exception {
+        var file = testDir.resolve("original-filepaths.txt");
+        Files.writeString(file, "data/123456789  data/in/a/nice/way\n\ndata/abc-def data/in/another path/ with spaces\n");
+
+        var paths = OriginalFilepaths.load(file);
+
+        assertThat(paths.getPhysicalPath(Path.of("data/in/a/nice/way"))).isEqualTo(Path.of("data/123456789"));
+        assertThat(paths.getPhysicalPath(Path.of("data/in/another path/ with spaces"))).isEqualTo(Path.of("data/abc-def"));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import nl.knaw.dans.vaultingest.core.ConvertToRdaBagTask;
+import nl.knaw.dans.vaultingest.core.ConvertToRdaBagTaskFactory;
+import nl.knaw.dans.vaultingest.core.deposit.Outbox;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class AutoIngestAreaTest {
+
+    @Test
+    void start_should_not_wait_for_an_executor_that_blocks() throws Exception {
+        var release = new CountDownLatch(1);
+        var executed = new CopyOnWriteArrayList<Runnable>();
+        var factory = Mockito.mock(ConvertToRdaBagTaskFactory.class);
+        when(factory.create(any(), any())).thenAnswer(invocation -> Mockito.mock(ConvertToRdaBagTask.class));
+        var paths = List.of(Path.of("a"), Path.of("b"), Path.of("c"));
+        IngestAreaWatcher watcher = callback -> paths.forEach(callback::onItemCreated);
+
+        var area = new AutoIngestArea(task -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            executed.add(task);
+        }, watcher, factory, Mockito.mock(Outbox.class));
+
+        area.start();
+        assertThat(executed).isEmpty();
+
+        release.countDown();
+        for (int i = 0; i < 100 && executed.size() < paths.size(); i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertThat(executed).hasSize(paths.size());
+        var order = Mockito.inOrder(factory);
+        for (var path : paths) {
+            order.verify(factory).create(Mockito.eq(path), any());
+        }
+        area.stop();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestAreaEventWatcherTest {
+
+    private final Path PATH = Path.of("target/" + this.getClass().getSimpleName() + "/inbox").toAbsolutePath();
+    private final List<Path> created = new CopyOnWriteArrayList<>();
+    private IngestAreaEventWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteQuietly(PATH.toFile());
+        Files.createDirectories(PATH);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    private void waitFor(int count) throws InterruptedException {
+        // the JDK's polling WatchService (used on platforms without native support) checks every few seconds
+        for (int i = 0; i < 300 && created.size() < count; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void start_should_throw_IllegalStateException_if_initial_directory_does_not_exist() {
+        var watcher = new IngestAreaEventWatcher(PATH.resolve("does-not-exist"), 10);
+
+        assertThatThrownBy(() -> watcher.start(created::add)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void start_should_report_existing_directories() throws Exception {
+        Files.createDirectories(PATH.resolve("deposit1"));
+        Files.writeString(PATH.resolve("not-a-deposit.txt"), "text");
+
+        watcher = new IngestAreaEventWatcher(PATH, 10);
+        watcher.start(created::add);
+
+        assertThat(created).containsExactly(PATH.resolve("deposit1"));
+    }
+
+    @Test
+    void start_should_report_new_directories_once() throws Exception {
+        watcher = new IngestAreaEventWatcher(PATH, 10);
+        watcher.start(created::add);
+
+        Files.createDirectories(PATH.resolve("deposit1"));
+        Files.createDirectories(PATH.resolve("deposit2"));
+        waitFor(2);
+        Thread.sleep(100);
+
+        assertThat(created).containsExactlyInAnyOrder(PATH.resolve("deposit1"), PATH.resolve("deposit2"));
+    }
+
+    @Test
+    void start_should_report_directories_moved_into_the_inbox() throws Exception {
+        var staging = Files.createDirectories(PATH.resolveSibling("staging").resolve("deposit1"));
+        watcher = new IngestAreaEventWatcher(PATH, 10);
+        watcher.start(created::add);
+
+        Files.move(staging, PATH.resolve("deposit1"));
+        waitFor(1);
+
+        assertThat(created).containsExactly(PATH.resolve("deposit1"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DdmReaderTest {
+
+    @Test
+    void read_should_give_same_results_as_xpath_getters() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), Map.of("user001", "Name of user"));
+        var ddm = deposit.getDdm();
+
+        var metadata = DdmReader.read(ddm);
+
+        assertThat(metadata.getTitle()).isEqualTo(Titles.getTitle(ddm));
+        assertThat(metadata.getAlternativeTitles()).isEqualTo(AlternativeTitles.getAlternativeTitles(ddm));
+        assertThat(metadata.getDescriptions()).isEqualTo(Descriptions.getDescriptions(ddm));
+        assertThat(metadata.getContributors()).isEqualTo(Contributors.getContributors(ddm));
+        assertThat(metadata.getCreators()).isEqualTo(Authors.getCreators(ddm));
+        assertThat(metadata.getAuthors())
+            .usingRecursiveComparison().ignoringFieldsOfTypes(Pattern.class)
+            .isEqualTo(Authors.getAuthors(ddm));
+        assertThat(metadata.getOrganizations())
+            .usingRecursiveComparison().ignoringFieldsOfTypes(Pattern.class)
+            .isEqualTo(Authors.getOrganizations(ddm));
+        assertThat(metadata.getAvailableDate()).isEqualTo(AvailableDate.getAvailableDate(ddm));
+        assertThat(metadata.getAccessRights()).isEqualTo(DataFile.getAccessRights(ddm));
+        assertThat(metadata.getAuthors()).isNotEmpty();
+        assertThat(metadata.getDescriptions()).isNotEmpty();
+    }
+
+    @Test
+    void read_should_only_use_contributors_with_a_role_other_than_rightsholder_or_funder() throws Exception {
+        var ddm = Util.readXml("<ddm:DDM\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+            + "        xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\"\n"
+            + ">\n"
+            + "    <ddm:dcmiMetadata>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:author><dcx-dai:surname>Editor</dcx-dai:surname><dcx-dai:role>Editor</dcx-dai:role></dcx-dai:author></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:author><dcx-dai:surname>Holder</dcx-dai:surname><dcx-dai:role>RightsHolder</dcx-dai:role></dcx-dai:author></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:author><dcx-dai:surname>NoRole</dcx-dai:surname></dcx-dai:author></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:organization><dcx-dai:name>Funder</dcx-dai:name><dcx-dai:role>Funder</dcx-dai:role></dcx-dai:organization></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:organization><dcx-dai:name>Sponsor</dcx-dai:name><dcx-dai:role>Sponsor</dcx-dai:role></dcx-dai:organization></dcx-dai:contributorDetails>\n"
+            + "    </ddm:dcmiMetadata>\n"
+            + "</ddm:DDM>");
+
+        var metadata = DdmReader.read(ddm);
+
+        assertThat(metadata.getContributors()).isEqualTo(Contributors.getContributors(ddm));
+        assertThat(metadata.getContributors()).extracting("name").containsExactly("Editor", "Sponsor");
+    }
+
+    @Test
+    void read_should_put_contributing_authors_before_contributing_organizations() throws Exception {
+        var ddm = Util.readXml("<ddm:DDM\n"
+            + "        xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\"\n"
+            + "        xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\"\n"
+            + ">\n"
+            + "    <ddm:dcmiMetadata>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:organization><dcx-dai:name>Sponsor</dcx-dai:name><dcx-dai:role>Sponsor</dcx-dai:role></dcx-dai:organization></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:author><dcx-dai:surname>Editor</dcx-dai:surname><dcx-dai:role>Editor</dcx-dai:role></dcx-dai:author></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:organization><dcx-dai:name>Distributor</dcx-dai:name><dcx-dai:role>Distributor</dcx-dai:role></dcx-dai:organization></dcx-dai:contributorDetails>\n"
+            + "        <dcx-dai:contributorDetails><dcx-dai:author><dcx-dai:surname>Researcher</dcx-dai:surname><dcx-dai:role>Researcher</dcx-dai:role></dcx-dai:author></dcx-dai:contributorDetails>\n"
+            + "    </ddm:dcmiMetadata>\n"
+            + "</ddm:DDM>");
+
+        var metadata = DdmReader.read(ddm);
+
+        assertThat(metadata.getContributors()).isEqualTo(Contributors.getContributors(ddm));
+        assertThat(metadata.getContributors()).extracting("name").containsExactly("Editor", "Researcher", "Sponsor", "Distributor");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.sparql.vocabulary.FOAF;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SchemaDO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OaiOreSerializerTest {
+
+    @Test
+    void serializeAsRdf_should_produce_graph_isomorphic_to_model() throws Exception {
+        var model = loadModel();
+
+        var rdf = new OaiOreSerializer(new ObjectMapper()).serializeAsRdf(model);
+
+        assertThat(parse(rdf).isIsomorphicWith(model)).isTrue();
+    }
+
+    @Test
+    void serializeAsRdf_should_produce_same_graph_as_jena_rdfxml_abbrev_writer() throws Exception {
+        var model = loadModel();
+        var serializer = new OaiOreSerializer(new ObjectMapper());
+        var rdf = serializer.serializeAsRdf(model);
+        var jenaOutput = new ByteArrayOutputStream();
+        RDFDataMgr.write(jenaOutput, model, RDFFormat.RDFXML_ABBREV);
+
+        assertThat(parse(rdf).isIsomorphicWith(parse(jenaOutput.toString(StandardCharsets.UTF_8)))).isTrue();
+    }
+
+    @Test
+    void serializeAsRdf_should_write_typed_top_level_elements_in_fixed_order() throws Exception {
+        var rdf = new OaiOreSerializer(new ObjectMapper()).serializeAsRdf(loadModel());
+
+        assertThat(rdf).startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        var resourceMap = rdf.indexOf("<ore:ResourceMap ");
+        var aggregation = rdf.indexOf("<ore:Aggregation ");
+        var aggregatedResource = rdf.indexOf("<ore:AggregatedResource ");
+        assertThat(resourceMap).isGreaterThan(0);
+        assertThat(aggregation).isGreaterThan(resourceMap);
+        assertThat(aggregatedResource).isGreaterThan(aggregation);
+    }
+
+    @Test
+    void serializeAsRdf_should_handle_shared_blank_nodes_literals_and_other_subjects() {
+        var model = ModelFactory.createDefaultModel();
+        var resourceMap = model.createResource("urn:uuid:map");
+        var aggregation = model.createResource("urn:nbn:nl:ui:13-test");
+        var file = model.createResource("urn:uuid:file");
+        var shared = model.createResource();
+        var other = model.createResource("https://example.org/other");
+        // referenced only once, but as an AggregatedResource it is written as a subject of its own and must not be nested as well
+        var blankFile = model.createResource();
+
+        model.add(resourceMap, RDF.type, ORE.ResourceMap);
+        model.add(resourceMap, ORE.describes, aggregation);
+        model.add(resourceMap, DCTerms.creator, model.createResource().addProperty(FOAF.name, "nested & <escaped>"));
+        model.add(aggregation, RDF.type, ORE.Aggregation);
+        model.add(aggregation, ORE.aggregates, file);
+        model.add(aggregation, DCTerms.title, model.createLiteral("Titel", "nl"));
+        model.add(aggregation, DCTerms.date, model.createTypedLiteral("2023-01-01", XSDDatatype.XSDdate));
+        model.add(aggregation, DCTerms.rightsHolder, shared);
+        model.add(file, RDF.type, ORE.AggregatedResource);
+        model.add(file, RDF.type, SchemaDO.DigitalDocument);
+        model.add(file, SchemaDO.name, "data/file.txt");
+        model.add(file, DCTerms.rightsHolder, shared);
+        model.add(aggregation, ORE.aggregates, blankFile);
+        model.add(blankFile, RDF.type, ORE.AggregatedResource);
+        model.add(blankFile, SchemaDO.name, "data/blank.txt");
+        model.add(shared, FOAF.name, "shared");
+        model.add(other, DCTerms.relation, aggregation);
+
+        var rdf = new OaiOreSerializer(new ObjectMapper()).serializeAsRdf(model);
+
+        assertThat(parse(rdf).isIsomorphicWith(model)).isTrue();
+    }
+
+    private Model parse(String rdf) {
+        var model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(rdf.getBytes(StandardCharsets.UTF_8)), Lang.RDFXML);
+        return model;
+    }
+
+    private Model loadModel() throws Exception {
+        var deposit = new TestDepositManager()
+            .loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"), Map.of("user001", "Name of user"));
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+        return new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance()).convert(deposit);
+    }
+}
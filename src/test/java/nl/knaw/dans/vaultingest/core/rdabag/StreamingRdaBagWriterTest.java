@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.loc.repository.bagit.reader.BagReader;
+import gov.loc.repository.bagit.verify.BagVerifier;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import nl.knaw.dans.vaultingest.core.IngestMetrics;
+import nl.knaw.dans.vaultingest.core.IngestStep;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
+import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
+import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
+import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
+import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
+import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
+import nl.knaw.dans.vaultingest.core.testutils.TestCountryResolverSingleton;
+import nl.knaw.dans.vaultingest.core.testutils.TestLanguageResolverSingleton;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingRdaBagWriterTest extends AbstractTestWithTestDir {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void write_should_create_valid_zipped_bag_and_leave_deposit_untouched() throws Exception {
+        var manager = new DepositManager(new XmlReader());
+        var inputDeposit = Path.of("src/test/resources/input/c169676f-5315-4d86-bde0-a62dbc915228");
+        var testDeposit = testDir.resolve(inputDeposit.getFileName());
+        FileUtils.copyDirectory(inputDeposit.toFile(), testDeposit.toFile());
+        var deposit = manager.loadDeposit(testDeposit, Map.of("user001", "Name of user"));
+        var tagManifestBefore = Files.readString(deposit.getBagDir().resolve("tagmanifest-sha1.txt"));
+        var rdaBag = testDir.resolve("rda-bag.zip");
+
+        var writer = new StreamingRdaBagWriter(
+            deposit,
+            new DataciteSerializer(),
+            new PidMappingSerializer(),
+            new OaiOreSerializer(new ObjectMapper()),
+            new DataciteConverter(),
+            new PidMappingConverter(),
+            new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance())
+        );
+
+        writer.write(rdaBag);
+
+        // the deposit is not modified
+        assertThat(deposit.getBagDir().resolve("metadata/datacite.xml")).doesNotExist();
+        assertThat(deposit.getBagDir().resolve("tagmanifest-sha1.txt")).hasContent(tagManifestBefore);
+        assertThat(testDir.resolve("rda-bag.zip.tmp")).doesNotExist();
+
+        var unzipped = unzip(rdaBag, testDir.resolve("unzipped"));
+        var bagDir = unzipped.resolve(deposit.getBagDir().getFileName());
+        assertThat(bagDir.resolve("metadata/datacite.xml")).exists();
+        assertThat(bagDir.resolve("metadata/pid-mapping.txt")).exists();
+        assertThat(bagDir.resolve("metadata/oai-ore.jsonld")).exists();
+        assertThat(bagDir.resolve("metadata/oai-ore.rdf")).exists();
+        assertThat(bagDir.resolve("data/26e30e9b-64a8-4a2f-8c70-a4653219c984")).exists();
+
+        try (var verifier = new BagVerifier()) {
+            verifier.isValid(new BagReader().read(bagDir), false);
+        }
+    }
+
+    @Test
+    public void write_should_time_each_metadata_file_and_the_tag_manifests() throws Exception {
+        var manager = new DepositManager(new XmlReader());
+        var inputDeposit = Path.of("src/test/resources/input/c169676f-5315-4d86-bde0-a62dbc915228");
+        var testDeposit = testDir.resolve(inputDeposit.getFileName());
+        FileUtils.copyDirectory(inputDeposit.toFile(), testDeposit.toFile());
+        var deposit = manager.loadDeposit(testDeposit, Map.of("user001", "Name of user"));
+        var metrics = new IngestMetrics(new MetricRegistry());
+
+        var writer = new StreamingRdaBagWriter(
+            deposit,
+            new DataciteSerializer(),
+            new PidMappingSerializer(),
+            new OaiOreSerializer(new ObjectMapper()),
+            new DataciteConverter(),
+            new PidMappingConverter(),
+            new OaiOreConverter(TestLanguageResolverSingleton.getInstance(), TestCountryResolverSingleton.getInstance()),
+            metrics
+        );
+
+        writer.write(testDir.resolve("rda-bag.zip"));
+
+        assertThat(metrics.getTimer(IngestStep.DATACITE).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.OAI_ORE).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.OAI_ORE_RDF).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.OAI_ORE_JSONLD).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.PID_MAPPING).getCount()).isEqualTo(1);
+        assertThat(metrics.getTimer(IngestStep.TAG_MANIFESTS).getCount()).isEqualTo(1);
+        // the ZIP file as a whole is timed by the task
+        assertThat(metrics.getTimer(IngestStep.ZIP).getCount()).isZero();
+    }
+
+    private Path unzip(Path zip, Path targetDir) throws Exception {
+        try (var zipFile = new ZipFile(zip.toFile())) {
+            for (var entry : (Iterable<ZipArchiveEntry>) () -> zipFile.getEntries().asIterator()) {
+                var target = targetDir.resolve(entry.getName());
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                }
+                else {
+                    Files.createDirectories(target.getParent());
+                    try (var input = zipFile.getInputStream(entry)) {
+                        Files.copy(input, target);
+                    }
+                }
+            }
+        }
+
+        return targetDir;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagManifestAppenderTest extends AbstractTestWithTestDir {
+    private static final String MANIFEST = ""
+        + "9f213dbab6008ffc21e30ad5209d807973fc3fa7  metadata/files.xml\n"
+        + "d87248dcd5158c6bcb0258aa89d3c84ceac994a7  manifest-sha1.txt\n"
+        + "e2924b081506bac23f5fffe650ad1848a1c8ac1d  bagit.txt\n";
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void patch_should_replace_existing_lines_and_append_new_ones() throws Exception {
+        var manifest = testDir.resolve("tagmanifest-sha1.txt");
+        Files.writeString(manifest, MANIFEST);
+
+        var checksums = new LinkedHashMap<Path, String>();
+        checksums.put(Path.of("manifest-sha1.txt"), "0000000000000000000000000000000000000000");
+        checksums.put(Path.of("metadata/datacite.xml"), "1111111111111111111111111111111111111111");
+
+        new TagManifestAppender().patch(manifest, testDir, checksums);
+
+        assertThat(manifest).hasContent(""
+            + "9f213dbab6008ffc21e30ad5209d807973fc3fa7  metadata/files.xml\n"
+            + "0000000000000000000000000000000000000000  manifest-sha1.txt\n"
+            + "e2924b081506bac23f5fffe650ad1848a1c8ac1d  bagit.txt\n"
+            + "1111111111111111111111111111111111111111  metadata/datacite.xml\n");
+        assertThat(testDir.resolve("tagmanifest-sha1.txt.tmp")).doesNotExist();
+    }
+
+    @Test
+    void patch_should_copy_other_lines_exactly() throws Exception {
+        var manifest = testDir.resolve("tagmanifest-sha1.txt");
+        // longer than the read buffer, and with a Windows line terminator
+        var longLine = "e2924b081506bac23f5fffe650ad1848a1c8ac1d  metadata/" + "x".repeat(100_000) + ".txt\r\n";
+        Files.writeString(manifest, longLine + MANIFEST);
+
+        new TagManifestAppender().patch(manifest, testDir, Map.of(Path.of("bagit.txt"), "0000000000000000000000000000000000000000"));
+
+        assertThat(Files.readString(manifest)).isEqualTo(longLine
+            + "9f213dbab6008ffc21e30ad5209d807973fc3fa7  metadata/files.xml\n"
+            + "d87248dcd5158c6bcb0258aa89d3c84ceac994a7  manifest-sha1.txt\n"
+            + "0000000000000000000000000000000000000000  bagit.txt\n");
+    }
+
+    @Test
+    void patch_should_add_missing_newline_before_appending() throws Exception {
+        var manifest = testDir.resolve("tagmanifest-sha1.txt");
+        Files.writeString(manifest, MANIFEST.trim());
+
+        new TagManifestAppender().patch(manifest, testDir, Map.of(Path.of("metadata/datacite.xml"), "1111111111111111111111111111111111111111"));
+
+        assertThat(manifest).hasContent(MANIFEST + "1111111111111111111111111111111111111111  metadata/datacite.xml\n");
+    }
+
+    @Test
+    void patch_should_rewrite_manifest_if_checksum_length_differs() throws Exception {
+        var manifest = testDir.resolve("tagmanifest-sha1.txt");
+        Files.writeString(manifest, MANIFEST);
+
+        new TagManifestAppender().patch(manifest, testDir, Map.of(Path.of("bagit.txt"), "abc"));
+
+        assertThat(manifest).hasContent(""
+            + "9f213dbab6008ffc21e30ad5209d807973fc3fa7  metadata/files.xml\n"
+            + "d87248dcd5158c6bcb0258aa89d3c84ceac994a7  manifest-sha1.txt\n"
+            + "abc  bagit.txt\n");
+        assertThat(testDir.resolve("tagmanifest-sha1.txt.tmp")).doesNotExist();
+    }
+
+    @Test
+    void patch_should_use_bagit_path_encoding() throws Exception {
+        var manifest = testDir.resolve("tagmanifest-sha1.txt");
+        Files.writeString(manifest, "e2924b081506bac23f5fffe650ad1848a1c8ac1d  metadata/100%25.txt\n");
+
+        new TagManifestAppender().patch(manifest, testDir, Map.of(Path.of("metadata/100%.txt"), "0000000000000000000000000000000000000000"));
+
+        assertThat(manifest).hasContent("0000000000000000000000000000000000000000  metadata/100%25.txt\n");
+    }
+
+    @Test
+    void patch_to_output_should_leave_input_unchanged() throws Exception {
+        var output = new ByteArrayOutputStream();
+
+        new TagManifestAppender().patch(
+            new ByteArrayInputStream(MANIFEST.getBytes(StandardCharsets.UTF_8)),
+            output,
+            testDir,
+            Map.of(Path.of("metadata/files.xml"), "2222222222222222222222222222222222222222"));
+
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(""
+            + "2222222222222222222222222222222222222222  metadata/files.xml\n"
+            + "d87248dcd5158c6bcb0258aa89d3c84ceac994a7  manifest-sha1.txt\n"
+            + "e2924b081506bac23f5fffe650ad1848a1c8ac1d  bagit.txt\n");
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.util;
+
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+import nl.knaw.dans.vaultingest.AbstractTestWithTestDir;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultiDigesterTest extends AbstractTestWithTestDir {
+    private final List<SupportedAlgorithm> algorithms = List.of(
+        StandardSupportedAlgorithms.MD5,
+        StandardSupportedAlgorithms.SHA1,
+        StandardSupportedAlgorithms.SHA256,
+        StandardSupportedAlgorithms.SHA512
+    );
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    void digest_should_match_MessageDigest_for_empty_input() throws Exception {
+        try (var digester = new MultiDigester(algorithms)) {
+            assertThat(digester.digest()).isEqualTo(expectedDigests(new byte[0]));
+        }
+    }
+
+    @Test
+    void digest_should_match_MessageDigest_for_input_in_chunks() throws Exception {
+        var data = randomBytes(3 * 1024 * 1024 + 17);
+
+        try (var digester = new MultiDigester(algorithms)) {
+            for (var off = 0; off < data.length; off += 1000) {
+                digester.update(data, off, Math.min(1000, data.length - off));
+            }
+
+            assertThat(digester.digest()).isEqualTo(expectedDigests(data));
+        }
+    }
+
+    @Test
+    void digest_should_match_MessageDigest_for_single_bytes() throws Exception {
+        var data = randomBytes(1234);
+
+        try (var digester = new MultiDigester(algorithms)) {
+            for (var b : data) {
+                digester.update(b);
+            }
+
+            assertThat(digester.digest()).isEqualTo(expectedDigests(data));
+        }
+    }
+
+    @Test
+    void update_should_throw_IllegalStateException_after_close() throws Exception {
+        var digester = new MultiDigester(algorithms);
+        digester.close();
+
+        assertThatThrownBy(() -> digester.update(1)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(digester::digest).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void update_should_throw_IllegalStateException_after_digest() throws Exception {
+        var data = randomBytes(1000);
+
+        try (var digester = new MultiDigester(algorithms)) {
+            digester.update(data, 0, data.length);
+            var digests = digester.digest();
+
+            assertThatThrownBy(() -> digester.update(data, 0, 1)).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> digester.update(1)).isInstanceOf(IllegalStateException.class);
+            assertThat(digester.digest()).isEqualTo(digests);
+        }
+    }
+
+    @Test
+    void digest_of_file_should_match_MessageDigest() throws Exception {
+        var data = randomBytes(1024 * 1024 + 3);
+        var file = testDir.resolve("file.bin");
+        Files.write(file, data);
+
+        assertThat(MultiDigester.digest(file, algorithms)).isEqualTo(expectedDigests(data));
+    }
+
+    @Test
+    void MultiDigestInputStream_should_return_checksums_of_all_bytes_read() throws Exception {
+        var data = randomBytes(200 * 1024);
+
+        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(data), algorithms)) {
+            input.readAllBytes();
+            assertThat(input.getChecksums()).isEqualTo(expectedDigests(data));
+        }
+    }
+
+    @Test
+    void MultiDigestOutputStream_should_return_checksums_of_all_bytes_written() throws Exception {
+        var data = randomBytes(200 * 1024 + 5);
+        var target = new ByteArrayOutputStream();
+
+        try (var output = new MultiDigestOutputStream(target, algorithms)) {
+            output.write(data[0]);
+            output.write(data, 1, data.length - 1);
+            assertThat(output.getChecksums()).isEqualTo(expectedDigests(data));
+        }
+
+        assertThat(target.toByteArray()).isEqualTo(data);
+    }
+
+    private byte[] randomBytes(int size) {
+        var data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private Map<SupportedAlgorithm, String> expectedDigests(byte[] data) throws Exception {
+        var result = new HashMap<SupportedAlgorithm, String>();
+
+        for (var algorithm : algorithms) {
+            var digest = MessageDigest.getInstance(algorithm.getMessageDigestName()).digest(data);
+            var hex = new StringBuilder();
+            for (var b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            result.put(algorithm, hex.toString());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XPathEvaluatorTest {
+    private static final String DDM = "<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
+        + "         xmlns:dcterms=\"http://purl.org/dc/terms/\">\n"
+        + "    <ddm:profile>\n"
+        + "        <dc:title>Title of the dataset</dc:title>\n"
+        + "        <dc:creator>Creator</dc:creator>\n"
+        + "    </ddm:profile>\n"
+        + "    <ddm:dcmiMetadata>\n"
+        + "        <dcterms:alternative>Alternative title 1</dcterms:alternative>\n"
+        + "        <dcterms:alternative>Alternative title 2</dcterms:alternative>\n"
+        + "    </ddm:dcmiMetadata>\n"
+        + "</ddm:DDM>\n";
+
+    private Document readDdm() throws Exception {
+        return new XmlReader().readXmlString(DDM);
+    }
+
+    @Test
+    void strings_should_resolve_the_known_namespace_prefixes() throws Exception {
+        var document = readDdm();
+
+        assertThat(XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/dc:title")).containsExactly("Title of the dataset");
+        assertThat(XPathEvaluator.strings(document, "//dcterms:alternative")).containsExactly("Alternative title 1", "Alternative title 2");
+    }
+
+    @Test
+    void strings_should_combine_several_expressions_in_document_order() throws Exception {
+        var document = readDdm();
+
+        assertThat(XPathEvaluator.strings(document, "//dcterms:alternative", "//dc:title", "//dc:creator"))
+            .containsExactly("Title of the dataset", "Creator", "Alternative title 1", "Alternative title 2");
+    }
+
+    @Test
+    void nodes_should_compile_an_expression_only_once_on_the_same_thread() throws Exception {
+        var document = readDdm();
+        // an expression that no other test uses, so that it is certainly not cached yet
+        var expression = "//dc:title[not(@id = '" + UUID.randomUUID() + "')]";
+
+        var before = XPathEvaluator.getCompilations();
+        assertThat(XPathEvaluator.nodes(document, expression)).hasSize(1);
+        assertThat(XPathEvaluator.nodes(document, expression)).hasSize(1);
+        assertThat(XPathEvaluator.nodes(document, expression)).hasSize(1);
+
+        assertThat(XPathEvaluator.getCompilations() - before).isEqualTo(1);
+    }
+
+    @Test
+    void strings_should_return_correct_results_when_used_concurrently() throws Exception {
+        var threads = 2 * XPathEvaluator.MAX_POOLED_COMPILERS;
+        var executor = Executors.newFixedThreadPool(threads);
+        var start = new CyclicBarrier(threads);
+
+        try {
+            var results = new ArrayList<Future<List<String>>>();
+            for (var i = 0; i < threads; i++) {
+                results.add(executor.submit((Callable<List<String>>) () -> {
+                    // a DOM is not thread-safe, so every thread has its own; the compilers are what is shared
+                    var document = readDdm();
+                    start.await(10, TimeUnit.SECONDS);
+                    var values = new ArrayList<String>();
+                    for (var j = 0; j < 100; j++) {
+                        values.addAll(XPathEvaluator.strings(document, "//dcterms:alternative").toList());
+                    }
+                    return values;
+                }));
+            }
+
+            for (var result : results) {
+                var values = result.get(1, TimeUnit.MINUTES);
+                assertThat(values).hasSize(200);
+                assertThat(values).containsOnly("Alternative title 1", "Alternative title 2");
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(XPathEvaluator.getPooledCompilers()).isBetween(1, XPathEvaluator.MAX_POOLED_COMPILERS);
+    }
+}